@@ -0,0 +1,30 @@
+package magic.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that every result includes the
+ * allocation rate ({@code gc.alloc.rate.norm} is bytes per operation), and
+ * writes the results as JSON to {@code jmh-result.json}. Accepts the usual JMH
+ * command-line options, such as a benchmark name pattern.
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,83 @@
+package magic.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import magic.Card;
+import magic.misc.CardRenderer;
+import magic.misc.Cards;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks sorting with {@link Cards#REGULAR_ORDERING} and printing with
+ * {@link Card#writeTo(Appendable)} and {@link CardRenderer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC" })
+public class CardBenchmark {
+
+	static final int SIZE = 4096;
+
+	private List<Card> cards;
+	private StringBuilder out;
+	private CardRenderer renderer;
+
+	@Setup public void setUp() {
+		cards = Inputs.cards(SIZE, Inputs.SEED);
+		out = new StringBuilder(SIZE * 256);
+		renderer = CardRenderer.to(new WritableByteChannel() {
+			@Override public int write(ByteBuffer src) {
+				int written = src.remaining();
+				src.position(src.limit());
+				return written;
+			}
+
+			@Override public boolean isOpen() {
+				return true;
+			}
+
+			@Override public void close() {}
+		});
+	}
+
+	@Benchmark
+	public List<Card> regularOrdering() {
+		return Cards.REGULAR_ORDERING.sortedCopy(cards);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public int writeTo() throws IOException {
+		out.setLength(0);
+		for (Card card : cards) {
+			card.writeTo(out);
+		}
+		return out.length();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void render() throws IOException {
+		renderer.writeCards(cards);
+		renderer.flush();
+	}
+
+}
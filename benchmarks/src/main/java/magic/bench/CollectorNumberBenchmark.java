@@ -0,0 +1,48 @@
+package magic.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import magic.CollectorNumber;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link CollectorNumber#parse(String)} over plain, lettered and
+ * starter numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC" })
+public class CollectorNumberBenchmark {
+
+	static final int SIZE = 1024;
+
+	private String[] numbers;
+
+	@Setup public void setUp() {
+		numbers = Inputs.collectorNumbers(SIZE, Inputs.SEED).toArray(new String[SIZE]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void parse(Blackhole blackhole) {
+		for (String number : numbers) {
+			blackhole.consume(CollectorNumber.parse(number));
+		}
+	}
+
+}
@@ -0,0 +1,382 @@
+package magic.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import magic.Card;
+import magic.Color;
+import magic.Expression;
+import magic.Link.Layout;
+import magic.ManaCost;
+import magic.Subtype;
+import magic.Supertype;
+import magic.Symbol;
+import magic.Type;
+import magic.impl.SimpleCard;
+import magic.misc.ReminderText;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Generates benchmark inputs. Every generator takes its own seed, so the same
+ * inputs are produced on every run and every machine. The distributions are
+ * rough approximations of real card data: mostly small generic costs with one
+ * or two colors, with a tail of hybrid, Phyrexian and X costs.
+ */
+final class Inputs {
+
+	static final long SEED = 0x6D61676963L;
+
+	private static final Color[] COLORS = Color.values();
+
+	private static final String[] WORDS = {
+			"Angel", "Wrath", "Goblin", "Guide", "Lightning", "Bolt", "Aether",
+			"Vial", "Grizzly", "Bears", "Serra", "Avatar", "Dark", "Ritual",
+			"Counterspell", "Llanowar", "Elves", "Shivan", "Dragon", "Wall",
+			"Stone", "Sword", "Fire", "Ice", "Jace", "Memory", "Tinker",
+			"Thought", "Scour", "Path", "Exile", "Crypt", "Command", "Kird",
+			"Ape", "Force", "Will", "Brainstorm", "Oath", "Druids" };
+
+	private static final String[] KEYWORDS = {
+			"Flying", "First strike", "Vigilance", "Trample", "Haste", "Reach",
+			"Defender", "Deathtouch", "Lifelink", "Hexproof", "Menace" };
+
+	private static final String[] REMINDERS = {
+			"This creature can't be blocked except by creatures with flying or reach.",
+			"It can deal combat damage to a creature or player before creatures without first strike.",
+			"Attacking doesn't cause this creature to tap.",
+			"If this creature would assign enough damage to its blockers to destroy them, you may have it assign the rest of its damage to defending player or planeswalker.",
+			"This creature can attack and {T} as soon as it comes under your control.",
+			"This creature can block creatures with flying.",
+			"This creature can't attack.",
+			"Any amount of damage this deals to a creature is enough to destroy it.",
+			"Damage dealt by this creature also causes you to gain that much life.",
+			"This creature can't be the target of spells or abilities your opponents control.",
+			"This creature can't be blocked except by two or more creatures." };
+
+	private static final String[] SENTENCES = {
+			"Draw a card.",
+			"Target creature gets +3/+3 until end of turn.",
+			"Counter target spell.",
+			"Destroy target artifact or enchantment.",
+			"{T}: Add {G} to your mana pool.",
+			"When this creature enters the battlefield, you gain 3 life.",
+			"At the beginning of your upkeep, sacrifice this permanent unless you pay {2}.",
+			"Lightning Bolt deals 3 damage to any target.",
+			"Return target creature card from your graveyard to your hand.",
+			"{1}{B}, Sacrifice a creature: Each opponent loses 2 life." };
+
+	private Inputs() {}
+
+	/**
+	 * Returns mana costs covering every symbol group, rendered in canonical
+	 * order.
+	 */
+	static ImmutableList<ManaCost> manaCosts(int count, long seed) {
+		Random random = new Random(seed);
+		ImmutableList.Builder<ManaCost> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			result.add(manaCost(random));
+		}
+		return result.build();
+	}
+
+	static ImmutableList<String> manaCostStrings(int count, long seed) {
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (ManaCost cost : manaCosts(count, seed)) {
+			result.add(cost.toString());
+		}
+		return result.build();
+	}
+
+	/**
+	 * Returns the symbols of random mana costs, without the generic part, in
+	 * shuffled order.
+	 */
+	static ImmutableList<List<Symbol>> symbolLists(int count, long seed) {
+		Random random = new Random(seed);
+		ImmutableList.Builder<List<Symbol>> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			List<Symbol> symbols = new ArrayList<>(manaCost(random).symbols());
+			Collections.shuffle(symbols, random);
+			result.add(symbols);
+		}
+		return result.build();
+	}
+
+	private static ManaCost manaCost(Random random) {
+		int roll = random.nextInt(100);
+		if (roll < 3) {
+			return ManaCost.EMPTY;
+		}
+		if (roll < 5) {
+			return ManaCost.ZERO;
+		}
+		List<Symbol> symbols = new ArrayList<>();
+		int colors = weighted(random, 25, 50, 18, 5, 1, 1);
+		List<Color> palette = palette(random, colors);
+		int kind = random.nextInt(100);
+		for (Color color : palette) {
+			int pips = 1 + weighted(random, 60, 30, 10);
+			for (int p = 0; p < pips; p++) {
+				if (kind < 80) {
+					symbols.add(primary(color));
+				} else if (kind < 88 && palette.size() == 2) {
+					// like real hybrid costs, a single two-color hybrid symbol
+					symbols.add(hybrid(palette.get(0), palette.get(1)));
+				} else if (kind < 93) {
+					symbols.add(phyrexian(color));
+				} else if (kind < 97) {
+					symbols.add(monocoloredHybrid(color));
+				} else {
+					symbols.add(primary(color));
+				}
+			}
+		}
+		if (random.nextInt(100) < 6) {
+			symbols.add(Symbol.X);
+			if (random.nextInt(10) == 0) {
+				symbols.add(Symbol.X);
+			}
+		}
+		int generic = weighted(random, 30, 25, 20, 12, 6, 4, 2, 1);
+		if (symbols.isEmpty() && generic == 0) {
+			generic = 1 + random.nextInt(12);
+		}
+		return ManaCost.of(generic, symbols);
+	}
+
+	static ImmutableList<String> colorSets(int count, long seed) {
+		Random random = new Random(seed);
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			StringBuilder builder = new StringBuilder();
+			for (Color color : palette(random, weighted(random, 10, 50, 25, 10, 3, 2))) {
+				builder.append(color.code());
+			}
+			result.add(builder.toString());
+		}
+		return result.build();
+	}
+
+	static ImmutableList<String> symbolStrings(int count, long seed) {
+		Random random = new Random(seed);
+		Symbol[] symbols = Symbol.values();
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			// mostly primary symbols, as in real costs
+			Symbol symbol = random.nextInt(4) != 0
+					? primary(COLORS[random.nextInt(COLORS.length)])
+					: symbols[random.nextInt(symbols.length)];
+			result.add(symbol.toString());
+		}
+		return result.build();
+	}
+
+	/**
+	 * Returns collector numbers in every supported format: plain numbers up
+	 * to 350, lettered halves of split cards, and starter numbers.
+	 */
+	static ImmutableList<String> collectorNumbers(int count, long seed) {
+		Random random = new Random(seed);
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			int number = 1 + random.nextInt(random.nextInt(10) == 0 ? 350 : 250);
+			int roll = random.nextInt(100);
+			if (roll < 85) {
+				result.add(Integer.toString(number));
+			} else if (roll < 95) {
+				result.add(number + (random.nextBoolean() ? "a" : "b"));
+			} else {
+				result.add("S" + (1 + random.nextInt(60)));
+			}
+		}
+		return result.build();
+	}
+
+	/**
+	 * Returns card texts in each shape that {@link ReminderText} handles, as
+	 * well as texts without reminder text, which make up most real cards.
+	 */
+	static ImmutableList<String> cardTexts(int count, long seed) {
+		Random random = new Random(seed);
+		ImmutableList.Builder<String> result = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			result.add(cardText(random));
+		}
+		return result.build();
+	}
+
+	private static String cardText(Random random) {
+		StringBuilder text = new StringBuilder();
+		int shape = random.nextInt(100);
+		int keyword = random.nextInt(KEYWORDS.length);
+		if (shape < 45) {
+			// no reminder text
+		} else if (shape < 70) {
+			// end of line
+			text.append(KEYWORDS[keyword]).append(" (")
+					.append(REMINDERS[keyword]).append(')');
+		} else if (shape < 80) {
+			// final keyword in a list
+			int other = (keyword + 1 + random.nextInt(KEYWORDS.length - 1)) % KEYWORDS.length;
+			text.append(KEYWORDS[other]).append("; ")
+					.append(KEYWORDS[keyword].toLowerCase()).append(" (")
+					.append(REMINDERS[keyword]).append(')');
+		} else if (shape < 90) {
+			// first line
+			Color a = COLORS[random.nextInt(COLORS.length)];
+			Color b = COLORS[(a.ordinal() + 1) % COLORS.length];
+			text.append("(").append(hybrid(a, b)).append(" can be paid with either {")
+					.append(a.code()).append("} or {").append(b.code()).append("}.)");
+		} else {
+			// middle of line
+			text.append("You may cast that card without paying its mana cost"
+					+ " as long as it remains exiled. (If it has X in its mana"
+					+ " cost, X is 0.) At the beginning of the next end step,"
+					+ " return it to its owner's hand.");
+		}
+		int sentences = weighted(random, 20, 45, 25, 10);
+		for (int s = 0; s < sentences; s++) {
+			if (text.length() > 0) {
+				text.append('\n');
+			}
+			text.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+		}
+		if (text.length() == 0) {
+			text.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns cards spanning every section of {@link magic.misc.Cards#REGULAR_ORDERING}:
+	 * monocolored, gold, hybrid, split, colorless, artifacts, lands and basic
+	 * lands.
+	 */
+	static ImmutableList<Card> cards(int count, long seed) {
+		Random random = new Random(seed);
+		List<Card> result = new ArrayList<>(count);
+		List<String> basics = Subtype.BASIC_LAND_TYPES.keySet().asList();
+		while (result.size() < count) {
+			int roll = random.nextInt(100);
+			if (roll < 5) {
+				String basic = basics.get(random.nextInt(basics.size()));
+				result.add(SimpleCard.builder()
+						.name(basic)
+						.supertypes(EnumSet.of(Supertype.BASIC))
+						.types(EnumSet.of(Type.LAND))
+						.subtypes(ImmutableList.of(basic))
+						.build());
+			} else if (roll < 12) {
+				result.add(SimpleCard.builder()
+						.name(name(random))
+						.types(EnumSet.of(Type.LAND))
+						.text(cardText(random))
+						.build());
+			} else if (roll < 15 && result.size() + 2 <= count) {
+				SimpleCard left = spell(random, name(random));
+				SimpleCard right = spell(random, name(random));
+				SimpleCard.link(left, right, Layout.SPLIT);
+				result.add(left);
+				result.add(right);
+			} else if (roll < 25) {
+				Set<Type> types = EnumSet.of(Type.ARTIFACT);
+				if (random.nextBoolean()) {
+					types.add(Type.CREATURE);
+				}
+				result.add(creatureOrSpell(random, name(random),
+						ManaCost.of(1 + random.nextInt(6)), types));
+			} else {
+				Set<Type> types = random.nextInt(100) < 55
+						? EnumSet.of(Type.CREATURE)
+						: EnumSet.of(random.nextBoolean() ? Type.INSTANT : Type.SORCERY);
+				result.add(creatureOrSpell(random, name(random),
+						manaCost(random), types));
+			}
+		}
+		return ImmutableList.copyOf(result);
+	}
+
+	private static SimpleCard spell(Random random, String name) {
+		return creatureOrSpell(random, name, manaCost(random),
+				EnumSet.of(Type.INSTANT));
+	}
+
+	private static SimpleCard creatureOrSpell(Random random, String name,
+			ManaCost cost, Set<Type> types) {
+		SimpleCard.Builder builder = SimpleCard.builder()
+				.name(name)
+				.manaCost(cost)
+				.types(types)
+				.text(cardText(random));
+		if (types.contains(Type.CREATURE)) {
+			builder.subtypes(ImmutableList.of(WORDS[random.nextInt(WORDS.length)]))
+					.power(random.nextInt(20) == 0
+							? Expression.of("*")
+							: Expression.of(random.nextInt(7)))
+					.toughness(Expression.of(1 + random.nextInt(7)));
+		}
+		return builder.build();
+	}
+
+	private static String name(Random random) {
+		int words = 1 + weighted(random, 40, 45, 15);
+		StringBuilder name = new StringBuilder();
+		for (int w = 0; w < words; w++) {
+			if (w > 0) {
+				name.append(' ');
+			}
+			name.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return name.toString();
+	}
+
+	private static List<Color> palette(Random random, int size) {
+		List<Color> colors = new ArrayList<>(ImmutableList.copyOf(COLORS));
+		Collections.shuffle(colors, random);
+		return new ArrayList<>(colors.subList(0, size));
+	}
+
+	/*
+	 * Returns i with probability proportional to weights[i].
+	 */
+	private static int weighted(Random random, int... weights) {
+		int total = 0;
+		for (int weight : weights) {
+			total += weight;
+		}
+		int roll = random.nextInt(total);
+		for (int i = 0; i < weights.length; i++) {
+			roll -= weights[i];
+			if (roll < 0) {
+				return i;
+			}
+		}
+		throw new AssertionError();
+	}
+
+	private static Symbol primary(Color color) {
+		return Symbol.parse("{" + color.code() + "}");
+	}
+
+	private static Symbol hybrid(Color a, Color b) {
+		Symbol symbol = Symbol.parse("{" + a.code() + "/" + b.code() + "}");
+		return symbol != null
+				? symbol
+				: Symbol.parse("{" + b.code() + "/" + a.code() + "}");
+	}
+
+	private static Symbol monocoloredHybrid(Color color) {
+		return Symbol.parse("{2/" + color.code() + "}");
+	}
+
+	private static Symbol phyrexian(Color color) {
+		return Symbol.parse("{" + color.code() + "/P}");
+	}
+
+}
@@ -0,0 +1,76 @@
+package magic.bench;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import magic.ManaCost;
+import magic.Symbol;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link ManaCost#parse(String)}, {@link ManaCost#of(int, Collection)},
+ * and putting the symbols of a new mana cost in canonical order.
+ * <p>
+ * Since the factory methods return cached, canonical costs whose
+ * {@link ManaCost#symbols()} are ordered once, {@link #orderSymbols} runs in
+ * forks in which the cache keeps nothing, so that every cost it creates is new
+ * and has to be ordered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC" })
+public class ManaCostBenchmark {
+
+	static final int SIZE = 1024;
+
+	private String[] costs;
+	private List<List<Symbol>> symbols;
+
+	@Setup public void setUp() {
+		costs = Inputs.manaCostStrings(SIZE, Inputs.SEED).toArray(new String[SIZE]);
+		symbols = Inputs.symbolLists(SIZE, Inputs.SEED);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void parse(Blackhole blackhole) {
+		for (String cost : costs) {
+			blackhole.consume(ManaCost.parse(cost));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void of(Blackhole blackhole) {
+		for (List<Symbol> list : symbols) {
+			blackhole.consume(ManaCost.of(1, list));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC",
+			"-D" + ManaCost.CACHE_SIZE_PROPERTY + "=0" })
+	public void orderSymbols(Blackhole blackhole) {
+		for (List<Symbol> list : symbols) {
+			blackhole.consume(ManaCost.of(1, list).symbols());
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package magic.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import magic.Color;
+import magic.Symbol;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link Symbol#parse(String)} and {@link Color#parseSet(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g", "-XX:+UseParallelGC" })
+public class SymbolBenchmark {
+
+	static final int SIZE = 1024;
+
+	private String[] symbols;
+	private String[] colorSets;
+
+	@Setup public void setUp() {
+		symbols = Inputs.symbolStrings(SIZE, Inputs.SEED).toArray(new String[SIZE]);
+		colorSets = Inputs.colorSets(SIZE, Inputs.SEED).toArray(new String[SIZE]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void parseSymbol(Blackhole blackhole) {
+		for (String symbol : symbols) {
+			blackhole.consume(Symbol.parse(symbol));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SIZE)
+	public void parseColorSet(Blackhole blackhole) {
+		for (String colors : colorSets) {
+			blackhole.consume(Color.parseSet(colors));
+		}
+	}
+
+}
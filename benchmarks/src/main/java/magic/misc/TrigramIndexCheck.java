@@ -0,0 +1,136 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import magic.Card;
+import magic.Type;
+import magic.impl.SimpleCard;
+
+/**
+ * Checks {@link TrigramIndex#nameMatches} and {@link TrigramIndex#textMatches}
+ * against a scan of every card, for random patterns built from pieces that
+ * are easy to get wrong: character classes that begin with {@code ']'} or
+ * {@code "[^]"}, nested classes, escapes, supplementary characters and
+ * quantifiers. It also checks that every match of a pattern contains each
+ * run returned by {@link TrigramIndex#literals}. The inputs come from a fixed
+ * seed, so every run checks the same patterns.
+ * <p>
+ * Run it from the {@code benchmarks} directory after {@code mvn package}:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar magic.misc.TrigramIndexCheck [patterns]
+ * </pre>
+ *
+ * It throws {@link AssertionError} at the first disagreement.
+ */
+public final class TrigramIndexCheck {
+
+	private static final long SEED = 29;
+	private static final int CARDS = 3000;
+	private static final int DEFAULT_PATTERNS = 40000;
+	private static final int SAMPLES = 50;
+
+	private static final String[] CHARACTERS = {
+		"a", "b", "c", "x", "y", "z", "A", " ", "]", "[", "^",
+		"\uD83D\uDE00", "\uD83D", "\uDE00",
+	};
+
+	private static final String[] ATOMS = {
+		"abc", "xyz", "c]a", "]", "\\]", "\\[", "[]abc]", "[^]abc]", "[^]]",
+		"[]]", "[a[]b]]", "[a[^]b]]", "[[]]]", "[]a]", "[^]a]", "\uD83D\uDE00",
+		"\uD83D\uDE00\uD83D\uDE00", "x\uD83D\uDE00y", "\\\uD83D\uDE00", "^", "a",
+		"b", "y", "z", "(ab)", "[ab]", ".",
+	};
+
+	private static final String[] QUANTIFIERS = {
+		"", "", "", "?", "*", "+", "{1,2}", "??", "+?", "{0}",
+	};
+
+	private TrigramIndexCheck() {}
+
+	public static void main(String[] args) {
+		int patterns = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PATTERNS;
+		Random random = new Random(SEED);
+		List<Card> cards = new ArrayList<>(CARDS);
+		for (int i = 0; i < CARDS; i++) {
+			cards.add(SimpleCard.builder()
+					.name(text(random, 10) + i)
+					.types(EnumSet.of(Type.INSTANT))
+					.text(text(random, 40))
+					.build());
+		}
+		TrigramIndex index = TrigramIndex.of(cards);
+
+		int compiled = 0;
+		int narrowed = 0;
+		for (int p = 0; p < patterns; p++) {
+			StringBuilder regex = new StringBuilder();
+			int atoms = 1 + random.nextInt(7);
+			for (int a = 0; a < atoms; a++) {
+				regex.append(ATOMS[random.nextInt(ATOMS.length)])
+						.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+			}
+			Pattern pattern;
+			try {
+				pattern = Pattern.compile(regex.toString(),
+						random.nextBoolean() ? Pattern.CASE_INSENSITIVE : 0);
+			} catch (PatternSyntaxException e) {
+				continue;
+			}
+			compiled++;
+			List<String> literals = TrigramIndex.literals(pattern);
+			if (!literals.isEmpty()) {
+				narrowed++;
+			}
+
+			List<Card> names = new ArrayList<>();
+			List<Card> texts = new ArrayList<>();
+			for (Card card : cards) {
+				if (pattern.matcher(card.name()).find()) {
+					names.add(card);
+				}
+				if (pattern.matcher(card.text()).find()) {
+					texts.add(card);
+				}
+			}
+			check(names.equals(index.nameMatches(pattern)), "nameMatches", pattern, literals);
+			check(texts.equals(index.textMatches(pattern)), "textMatches", pattern, literals);
+
+			for (int s = 0; s < SAMPLES; s++) {
+				Matcher matcher = pattern.matcher(text(random, 12));
+				if (matcher.find()) {
+					for (String literal : literals) {
+						check(CaseInsensitive.indexOf(matcher.group(), literal, 0) != -1,
+								"match " + matcher.group(), pattern, literals);
+					}
+				}
+			}
+		}
+		System.out.printf("%d patterns agree with a full scan, %d of them narrowed%n",
+				compiled, narrowed);
+	}
+
+	private static String text(Random random, int maxLength) {
+		int length = random.nextInt(maxLength + 1);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			builder.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+		}
+		return builder.toString();
+	}
+
+	private static void check(boolean condition, String what, Pattern pattern,
+			List<String> literals) {
+		if (!condition) {
+			throw new AssertionError(String.format("%s disagrees for /%s/ with literals %s",
+					what, pattern, literals));
+		}
+	}
+
+}
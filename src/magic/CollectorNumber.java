@@ -1,29 +1,52 @@
 package magic;
 
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import magic.misc.Flyweights;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ComparisonChain;
 
 /**
  * An immutable object that represents a collector number. A collector number is
  * a positive integer with an optional letter, which, when present, can be used
  * to denote different halves of two-part cards, or variations of the same card
  * within an expansion.
+ * <p>
+ * A collector number is stored as a single {@code int}, its
+ * {@linkplain #sortKey() sort key}, which orders collector numbers in the same
+ * way as {@link #compareTo}. Equal collector numbers returned by the factory
+ * methods are the same instance: those that are only a small number are
+ * cached, and the rest are interned in {@link Flyweights#COLLECTOR_NUMBERS},
+ * which keeps them only for as long as they are in use.
  */
 public final class CollectorNumber implements Comparable<CollectorNumber> {
 
-	private final int number;
-	private final Letter letter;
-	private final boolean starter;
+	/**
+	 * The largest number a collector number can have.
+	 */
+	public static final int MAX_NUMBER = (1 << 28) - 1;
+
+	// the sort key is starter << 30 | number << 2 | letter
+	private static final int LETTER_BITS = 2;
+	private static final int LETTER_MASK = (1 << LETTER_BITS) - 1;
+	private static final int STARTER = 1 << 30;
+
+	private static final int CACHE_HIGH = 1024;
+	private static final CollectorNumber[] CACHE = new CollectorNumber[CACHE_HIGH + 1];
+
+	static {
+		for (int number = 1; number <= CACHE_HIGH; number++) {
+			CACHE[number] = new CollectorNumber(number << LETTER_BITS);
+		}
+	}
+
+	private final int key;
 
 	public enum Letter {
 		NONE(""),
 		A("a"),
 		B("b");
 
+		private static final Letter[] VALUES = values();
+
 		private final String value;
 
 		private Letter(String value) {
@@ -40,9 +63,6 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 		}
 	}
 
-	private static final Pattern PATTERN =
-			Pattern.compile("(S?)(\\d+)([a-z]?)");
-	
 	/**
 	 * Parses the given input as a collector number. The input must be in the
 	 * form of an integer greater than or equal to 1 followed immediately by a
@@ -65,29 +85,40 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 * </ul>
 	 */
 	public static CollectorNumber parse(String input) {
-		try {
-			// most common type of collector number
-			return new CollectorNumber(Integer.parseInt(input));
-		} catch (NumberFormatException ignore) {
-			// continue
+		int length = input.length();
+		int i = 0;
+		boolean starter = length > 0 && input.charAt(0) == 'S';
+		if (starter) {
+			i++;
 		}
-		Matcher matcher = PATTERN.matcher(input);
-		if (!matcher.matches()) {
+		int digits = i;
+		long number = 0;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c < '0' || '9' < c) {
+				break;
+			}
+			number = number * 10 + (c - '0');
+			if (number > MAX_NUMBER) {
+				throw new IllegalArgumentException(input);
+			}
+		}
+		if (i == digits) {
 			throw new IllegalArgumentException(input);
 		}
-		String starter = matcher.group(1);
-		String number = matcher.group(2);
-		String letter = matcher.group(3);
-		return new CollectorNumber(
-				!starter.isEmpty(),
-				Integer.parseInt(number),
-				letter.isEmpty()
-						? Letter.NONE
-						: Letter.valueOf(letter.charAt(0)));
+		Letter letter = Letter.NONE;
+		if (i < length) {
+			char c = input.charAt(i);
+			if (i + 1 < length || c < 'a' || 'z' < c) {
+				throw new IllegalArgumentException(input);
+			}
+			letter = Letter.valueOf(c);
+		}
+		return of(starter, (int) number, letter);
 	}
 
 	/**
-	 * Returns a new {@code CollectorNumber} with a letter.
+	 * Returns a {@code CollectorNumber} with a letter.
 	 * 
 	 * @param number
 	 *            the number
@@ -96,47 +127,54 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 */
 	public static CollectorNumber of(int number, Letter letter) {
 		Preconditions.checkNotNull(letter);
-		return new CollectorNumber(false, number, letter);
+		return of(false, number, letter);
 	}
 
 	/**
-	 * Returns a new {@code CollectorNumber} without a letter.
+	 * Returns a {@code CollectorNumber} without a letter.
 	 * 
 	 * @param number
 	 *            the number
 	 */
 	public static CollectorNumber of(int number) {
-		return new CollectorNumber(number);
+		return of(false, number, Letter.NONE);
 	}
 
 	/**
-	 * Returns a new "Starter" {@code CollectorNumber} without a letter.
+	 * Returns a "Starter" {@code CollectorNumber} without a letter.
 	 * 
 	 * @param number
 	 *            the number
 	 */
 	public static CollectorNumber starter(int number) {
-		return new CollectorNumber(true, number, Letter.NONE);
+		return of(true, number, Letter.NONE);
 	}
 
-	private CollectorNumber(int number) {
-		this(false, number, Letter.NONE);
-	}
-
-	private CollectorNumber(boolean starter, int number, Letter letter) {
+	private static CollectorNumber of(boolean starter, int number, Letter letter) {
 		if (number < 1) {
 			throw new IllegalArgumentException("number < 1");
 		}
-		this.starter = starter;
-		this.number = number;
-		this.letter = letter;
+		if (number > MAX_NUMBER) {
+			throw new IllegalArgumentException("number > " + MAX_NUMBER);
+		}
+		if (!starter && letter == Letter.NONE && number <= CACHE_HIGH) {
+			return CACHE[number];
+		}
+		int key = (starter ? STARTER : 0)
+				| number << LETTER_BITS
+				| letter.ordinal();
+		return Flyweights.COLLECTOR_NUMBERS.intern(new CollectorNumber(key));
+	}
+
+	private CollectorNumber(int key) {
+		this.key = key;
 	}
 
 	/**
 	 * Returns the number part of this {@code CollectorNumber}.
 	 */
 	public int number() {
-		return number;
+		return (key & ~STARTER) >>> LETTER_BITS;
 	}
 
 	/**
@@ -144,7 +182,7 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 * if there is no letter.
 	 */
 	public Letter letter() {
-		return letter;
+		return Letter.VALUES[key & LETTER_MASK];
 	}
 
 	/**
@@ -152,7 +190,16 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 * with "S").
 	 */
 	public boolean starter() {
-		return starter;
+		return (key & STARTER) != 0;
+	}
+
+	/**
+	 * Returns a non-negative {@code int} that orders collector numbers in the
+	 * same way as {@link #compareTo}: the starter flag, then the number, then
+	 * the ordinal of the letter, from the most significant bits down.
+	 */
+	public int sortKey() {
+		return key;
 	}
 
 	/**
@@ -161,14 +208,11 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 */
 	@Override public String toString() {
 		StringBuilder builder = new StringBuilder();
-		if (starter) {
+		if (starter()) {
 			builder.append('S');
 		}
-		builder.append(number);
-		if (letter != Letter.NONE) {
-			builder.append(letter);
-		}
-		return builder.toString();
+		builder.append(number());
+		return builder.append(letter()).toString();
 	}
 
 	/**
@@ -176,27 +220,18 @@ public final class CollectorNumber implements Comparable<CollectorNumber> {
 	 * same, by their letter. Starter numbers come at the end.
 	 */
 	@Override public int compareTo(CollectorNumber o) {
-		return ComparisonChain.start()
-				.compareFalseFirst(starter, o.starter)
-				.compare(number, o.number)
-				.compare(letter, o.letter)
-				.result();
+		return Integer.compare(key, o.key);
 	}
 
 	@Override public int hashCode() {
-		return Objects.hash(starter, number, letter);
+		return key;
 	}
 
 	@Override public boolean equals(Object obj) {
 		if (this == obj) {
 			return true;
 		}
-		if (!(obj instanceof CollectorNumber)) {
-			return false;
-		}
-		CollectorNumber other = (CollectorNumber) obj;
-		return starter == other.starter
-				&& number == other.number
-				&& letter == other.letter;
+		return obj instanceof CollectorNumber
+				&& key == ((CollectorNumber) obj).key;
 	}
 }
@@ -1,6 +1,5 @@
 package magic;
 
-import java.util.EnumSet;
 import java.util.Set;
 
 import magic.misc.EnumSetInterner;
@@ -61,9 +60,15 @@ public enum Color {
 	}
 
 	/**
-	 * An {@link SetInterner} for interning {@link Set}s of {@code Color}s.
+	 * An {@link SetInterner} for interning {@link Set}s of {@code Color}s. It
+	 * returns {@link ColorSet#asImmutableSet()} for the given colors, so
+	 * interning a set only costs iterating over it.
 	 */
-	public static EnumSetInterner<Color> INTERNER = new EnumSetInterner<>();
+	public static EnumSetInterner<Color> INTERNER = new EnumSetInterner<Color>() {
+		@Override public ImmutableSet<Color> intern(Set<Color> sample) {
+			return ColorSet.copyOf(sample).asImmutableSet();
+		}
+	};
 
 	/**
 	 * Returns an interned, immutable {@code Set} of {@code Color}s specified by
@@ -81,11 +86,7 @@ public enum Color {
 	 *             a color
 	 */
 	public static ImmutableSet<Color> parseSet(String input) {
-		EnumSet<Color> result = EnumSet.noneOf(Color.class);
-		for (int i = 0; i < input.length(); i++) {
-			result.add(forCode(input.charAt(i)));
-		}
-		return INTERNER.intern(result);
+		return ColorSet.parse(input).asImmutableSet();
 	}
 	
 	/**
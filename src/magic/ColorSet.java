@@ -0,0 +1,248 @@
+package magic;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * An immutable set of {@link Color}s represented by a five-bit mask, where bit
+ * {@code n} stands for the color with ordinal {@code n}. There are only 32
+ * sets of colors, and each has exactly one {@code ColorSet} instance, so
+ * {@code ColorSet}s can be compared with {@code ==}, and unions, intersections
+ * and subset checks are single integer operations on {@link #mask()}.
+ * <p>
+ * A {@code ColorSet} is equal to any other {@link java.util.Set} with the same
+ * colors. Where an {@link ImmutableSet} is needed, {@link #asImmutableSet()}
+ * returns the one interned by {@link Color#INTERNER} for the same colors.
+ */
+public final class ColorSet extends AbstractSet<Color> {
+
+	private static final Color[] COLORS = Color.values();
+	private static final int ALL_MASK = (1 << COLORS.length) - 1;
+	private static final ColorSet[] INSTANCES = new ColorSet[ALL_MASK + 1];
+
+	static {
+		for (int mask = 0; mask <= ALL_MASK; mask++) {
+			INSTANCES[mask] = new ColorSet(mask);
+		}
+	}
+
+	/**
+	 * The set of no colors.
+	 */
+	public static final ColorSet NONE = INSTANCES[0];
+
+	/**
+	 * The set of all five colors.
+	 */
+	public static final ColorSet ALL = INSTANCES[ALL_MASK];
+
+	private final int mask;
+	private final int hashCode;
+	private final ImmutableSet<Color> immutable;
+
+	private ColorSet(int mask) {
+		this.mask = mask;
+		EnumSet<Color> colors = EnumSet.noneOf(Color.class);
+		for (Color color : COLORS) {
+			if ((mask & bit(color)) != 0) {
+				colors.add(color);
+			}
+		}
+		this.hashCode = colors.hashCode();
+		this.immutable = Sets.immutableEnumSet(colors);
+	}
+
+	/**
+	 * Returns the set of colors with the given mask.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the mask has bits set other than the lowest five
+	 */
+	public static ColorSet of(int mask) {
+		checkArgument((mask & ~ALL_MASK) == 0, "invalid color mask: %s", mask);
+		return INSTANCES[mask];
+	}
+
+	/**
+	 * Returns the set of the given colors.
+	 */
+	public static ColorSet of(Color... colors) {
+		int mask = 0;
+		for (Color color : colors) {
+			mask |= bit(color);
+		}
+		return INSTANCES[mask];
+	}
+
+	/**
+	 * Returns the set of the given colors.
+	 */
+	public static ColorSet copyOf(Iterable<Color> colors) {
+		return INSTANCES[mask(colors)];
+	}
+
+	/**
+	 * Returns the mask of the given colors. This is constant time for a
+	 * {@code ColorSet}.
+	 */
+	public static int mask(Iterable<Color> colors) {
+		if (colors instanceof ColorSet) {
+			return ((ColorSet) colors).mask;
+		}
+		int mask = 0;
+		for (Color color : colors) {
+			mask |= bit(color);
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns the set of colors whose codes are in the given string, in the
+	 * same way as {@link Color#parseSet(String)}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the input string contains a character not corresponding to
+	 *             a color
+	 */
+	public static ColorSet parse(String input) {
+		int mask = 0;
+		for (int i = 0; i < input.length(); i++) {
+			mask |= bit(Color.forCode(input.charAt(i)));
+		}
+		return INSTANCES[mask];
+	}
+
+	private static int bit(Color color) {
+		return 1 << color.ordinal();
+	}
+
+	/**
+	 * Returns the mask of this set, in which bit {@code n} is set if the color
+	 * with ordinal {@code n} is in this set.
+	 */
+	public int mask() {
+		return mask;
+	}
+
+	/**
+	 * Returns the colors in either this set or the other.
+	 */
+	public ColorSet union(ColorSet other) {
+		return INSTANCES[mask | other.mask];
+	}
+
+	/**
+	 * Returns the colors in both this set and the other.
+	 */
+	public ColorSet intersection(ColorSet other) {
+		return INSTANCES[mask & other.mask];
+	}
+
+	/**
+	 * Returns the colors in this set but not the other.
+	 */
+	public ColorSet difference(ColorSet other) {
+		return INSTANCES[mask & ~other.mask];
+	}
+
+	/**
+	 * Returns the colors not in this set.
+	 */
+	public ColorSet complement() {
+		return INSTANCES[~mask & ALL_MASK];
+	}
+
+	/**
+	 * Returns whether every color in this set is also in the other.
+	 */
+	public boolean isSubsetOf(ColorSet other) {
+		return (mask & ~other.mask) == 0;
+	}
+
+	/**
+	 * Returns whether this set and the other have any color in common.
+	 */
+	public boolean intersects(ColorSet other) {
+		return (mask & other.mask) != 0;
+	}
+
+	/**
+	 * Returns whether this set contains the given color.
+	 */
+	public boolean contains(Color color) {
+		return (mask & bit(color)) != 0;
+	}
+
+	/**
+	 * Returns the {@link ImmutableSet} of the same colors, which is the one
+	 * {@link Color#INTERNER} returns for them.
+	 */
+	public ImmutableSet<Color> asImmutableSet() {
+		return immutable;
+	}
+
+	@Override public boolean contains(Object o) {
+		return o instanceof Color && contains((Color) o);
+	}
+
+	@Override public boolean containsAll(Collection<?> c) {
+		if (c instanceof ColorSet) {
+			return ((ColorSet) c).isSubsetOf(this);
+		}
+		return super.containsAll(c);
+	}
+
+	@Override public int size() {
+		return Integer.bitCount(mask);
+	}
+
+	@Override public boolean isEmpty() {
+		return mask == 0;
+	}
+
+	/**
+	 * Returns an iterator over the colors in this set, in ordinal order.
+	 */
+	@Override public Iterator<Color> iterator() {
+		return new Iterator<Color>() {
+			private int remaining = mask;
+
+			@Override public boolean hasNext() {
+				return remaining != 0;
+			}
+
+			@Override public Color next() {
+				if (remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				Color result = COLORS[Integer.numberOfTrailingZeros(remaining)];
+				remaining &= remaining - 1;
+				return result;
+			}
+
+			@Override public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override public boolean equals(Object obj) {
+		if (obj instanceof ColorSet) {
+			return this == obj;
+		}
+		return super.equals(obj);
+	}
+
+	@Override public int hashCode() {
+		return hashCode;
+	}
+
+}
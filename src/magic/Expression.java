@@ -1,12 +1,24 @@
 package magic;
 
+import magic.misc.Flyweights;
+
+import com.google.common.collect.Ordering;
+import com.google.common.primitives.Ints;
+
 /**
  * An immutable object that may represent a constant or variable value, used to
  * represent power and toughness. Expressions such as {@code 6} or {@code -1}
  * are constant, while the expressions {@code *} and {@code 7-*} are variable.
  * <p>
  * Constant expressions are cached between a certain range intended to maximize
- * performance.
+ * performance. Other expressions are interned in {@link Flyweights#EXPRESSIONS},
+ * which keeps them only for as long as they are in use, so equal expressions
+ * returned by the factory methods are always the same instance.
+ * <p>
+ * Variable expressions that are sums of integers and {@code *}, such as
+ * {@code 1+*} or {@code 7-*}, are compiled when they are created into the form
+ * {@code a*x + b}, so they can be {@linkplain #evaluate(int) evaluated} for a
+ * given value of {@code *} without parsing them again.
  */
 public abstract class Expression implements Comparable<Expression> {
 
@@ -29,7 +41,7 @@ public abstract class Expression implements Comparable<Expression> {
 			return CACHE[value - CACHE_LOW];
 		}
 		// should cause a warning
-		return new ConstantExpression(value);
+		return Flyweights.EXPRESSIONS.intern(new ConstantExpression(value));
 	}
 
 	/**
@@ -41,7 +53,7 @@ public abstract class Expression implements Comparable<Expression> {
 		try {
 			return of(Integer.parseInt(value));
 		} catch (NumberFormatException ignore) {
-			return new VariableExpression(value);
+			return Flyweights.EXPRESSIONS.intern(new VariableExpression(value));
 		}
 	}
 
@@ -62,6 +74,52 @@ public abstract class Expression implements Comparable<Expression> {
 	 */
 	public abstract int value();
 
+	/**
+	 * Returns whether this {@code Expression} can be
+	 * {@linkplain #evaluate(int) evaluated}: it is either constant, or a sum of
+	 * integers and {@code *}.
+	 */
+	public abstract boolean isEvaluable();
+
+	/**
+	 * Returns the value of this {@code Expression} when {@code *} has the given
+	 * value. A constant expression always returns its constant value.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the instance is not evaluable ({@link #isEvaluable}
+	 *             returns {@code false})
+	 */
+	public abstract int evaluate(int star);
+
+	/**
+	 * Returns an {@link Ordering} of {@code Expression}s by their value when
+	 * {@code *} has the given value. Expressions with the same value are in
+	 * their natural order, and expressions that are not evaluable come after
+	 * all others, also in their natural order; this makes the ordering
+	 * consistent with {@link #equals}.
+	 */
+	public static Ordering<Expression> orderingAt(final int star) {
+		return new Ordering<Expression>() {
+			@Override public int compare(Expression left, Expression right) {
+				if (left.isEvaluable() != right.isEvaluable()) {
+					return left.isEvaluable() ? -1 : 1;
+				}
+				if (left.isEvaluable()) {
+					int result = Integer.compare(
+							left.evaluate(star), right.evaluate(star));
+					if (result != 0) {
+						return result;
+					}
+				}
+				return left.compareTo(right);
+			}
+
+			@Override public String toString() {
+				return "Expression.orderingAt(" + star + ")";
+			}
+		};
+	}
+
 	/**
 	 * Returns the {@link String} representation of this {@code Expression}.
 	 */
@@ -91,6 +149,14 @@ public abstract class Expression implements Comparable<Expression> {
 			return value;
 		}
 
+		@Override public boolean isEvaluable() {
+			return true;
+		}
+
+		@Override public int evaluate(int star) {
+			return value;
+		}
+
 		@Override public String toString() {
 			return Integer.toString(value);
 		}
@@ -120,10 +186,54 @@ public abstract class Expression implements Comparable<Expression> {
 
 	private static class VariableExpression extends Expression {
 
+		private static final char STAR = '*';
+
 		private final String value;
+		// the compiled form coefficient * star + offset, if evaluable
+		private final boolean evaluable;
+		private final int coefficient;
+		private final int offset;
 
 		private VariableExpression(String value) {
 			this.value = value;
+			int coefficient = 0;
+			long offset = 0;
+			boolean evaluable = !value.isEmpty();
+			int i = 0;
+			while (evaluable && i < value.length()) {
+				int sign = 1;
+				char c = value.charAt(i);
+				if (c == '+' || c == '-') {
+					sign = c == '-' ? -1 : 1;
+					i++;
+				} else if (i > 0) {
+					evaluable = false;
+					break;
+				}
+				if (i < value.length() && value.charAt(i) == STAR) {
+					coefficient += sign;
+					i++;
+				} else {
+					int end = i;
+					while (end < value.length()
+							&& '0' <= value.charAt(end) && value.charAt(end) <= '9') {
+						end++;
+					}
+					Integer term = end > i
+							? Ints.tryParse(value.substring(i, end))
+							: null;
+					if (term == null) {
+						evaluable = false;
+						break;
+					}
+					offset += sign * term;
+					i = end;
+				}
+			}
+			evaluable &= offset == (int) offset;
+			this.evaluable = evaluable;
+			this.coefficient = evaluable ? coefficient : 0;
+			this.offset = evaluable ? (int) offset : 0;
 		}
 
 		@Override public int value() {
@@ -131,6 +241,18 @@ public abstract class Expression implements Comparable<Expression> {
 					"\"%s\" has no constant value", this));
 		}
 
+		@Override public boolean isEvaluable() {
+			return evaluable;
+		}
+
+		@Override public int evaluate(int star) {
+			if (!evaluable) {
+				throw new IllegalStateException(String.format(
+						"\"%s\" cannot be evaluated", this));
+			}
+			return coefficient * star + offset;
+		}
+
 		@Override public String toString() {
 			return value;
 		}
@@ -1,30 +1,27 @@
 package magic;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import magic.Symbol.Group;
 
 import com.google.common.base.Optional;
-import com.google.common.base.Supplier;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ImmutableMultiset.Builder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.MapMaker;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Multiset;
-import com.google.common.collect.TreeMultiset;
 
 /**
  * An immutable object representing a mana cost. A {@code ManaCost} has two
@@ -62,6 +59,14 @@ import com.google.common.collect.TreeMultiset;
  * multicolored cards.) With the release of Khans of Tarkir, however, this is no
  * longer true. "Wedge" multicolored cards with a clan watermark use a new order
  * for the symbols, leading with that clan's dominant color.
+ * <p>
+ * The static factory methods return canonical instances: every distinct mana
+ * cost is created once and shared, so equal mana costs are usually the same
+ * object. The number of distinct costs kept can be bounded with the
+ * {@value #CACHE_SIZE_PROPERTY} system property, in which case the least
+ * recently used are evicted and may be created again; by default there is no
+ * bound, as a full card pool has only a few thousand distinct costs.
+ * {@link #cacheStats()} reports how well the cache is doing.
  * 
  * @see Symbol
  */
@@ -92,18 +97,64 @@ public abstract class ManaCost {
 	public static final ManaCost ZERO = new SpecialManaCost("{0}");
 
 	/**
-	 * Returns a new {@code ManaCost} with the given {@code Symbol}s and no
+	 * The system property that sets the maximum number of distinct mana costs
+	 * kept by the canonicalizing cache. It is read once, when this class is
+	 * initialized.
+	 */
+	public static final String CACHE_SIZE_PROPERTY = "magic.manaCost.cacheSize";
+
+	private static final LoadingCache<ManaCost, ManaCost> CANONICAL = newCache();
+
+	private static LoadingCache<ManaCost, ManaCost> newCache() {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+		Long maximumSize = Long.getLong(CACHE_SIZE_PROPERTY);
+		if (maximumSize != null) {
+			builder.maximumSize(maximumSize);
+		}
+		return builder.build(new CacheLoader<ManaCost, ManaCost>() {
+			@Override public ManaCost load(ManaCost key) {
+				return key;
+			}
+		});
+	}
+
+	/**
+	 * Returns the hit, miss and eviction counts of the cache of canonical
+	 * mana costs since this class was initialized. {@link #EMPTY} and
+	 * {@link #ZERO} are not counted.
+	 */
+	public static CacheStats cacheStats() {
+		return CANONICAL.stats();
+	}
+
+	/**
+	 * Returns the number of distinct mana costs currently in the cache.
+	 */
+	public static long cacheSize() {
+		return CANONICAL.size();
+	}
+
+	/**
+	 * Returns a {@code ManaCost} with the given {@code Symbol}s and no
 	 * colorless mana. If the array of symbols is empty, the empty mana cost is
 	 * returned.
+	 * <p>
+	 * The result may be a shared, canonical instance; whether equal costs are
+	 * the same object depends on the cache described in the class
+	 * documentation, so compare them with {@link #equals(Object)}.
 	 */
 	public static ManaCost of(Symbol... symbols) {
 		return of(Arrays.asList(symbols));
 	}
 
 	/**
-	 * Returns a new {@code ManaCost} with the given {@code Symbol}s and no
+	 * Returns a {@code ManaCost} with the given {@code Symbol}s and no
 	 * colorless mana. If the {@link Collection} of symbols is empty, the empty
 	 * mana cost is returned.
+	 * <p>
+	 * The result may be a shared, canonical instance; whether equal costs are
+	 * the same object depends on the cache described in the class
+	 * documentation, so compare them with {@link #equals(Object)}.
 	 */
 	public static ManaCost of(Collection<Symbol> symbols) {
 		if (symbols.size() == 0) {
@@ -113,33 +164,69 @@ public abstract class ManaCost {
 	}
 
 	/**
-	 * Returns a new {@code ManaCost} with the given amount of colorless mana
-	 * and other mana symbols. If the array of symbols is empty and the amount
-	 * of colorless is zero, the zero mana cost is returned.
+	 * Returns a {@code ManaCost} with the given amount of colorless mana and
+	 * other mana symbols. If the array of symbols is empty and the amount of
+	 * colorless is zero, the zero mana cost is returned.
+	 * <p>
+	 * The result may be a shared, canonical instance; whether equal costs are
+	 * the same object depends on the cache described in the class
+	 * documentation, so compare them with {@link #equals(Object)}.
 	 */
 	public static ManaCost of(int colorless, Symbol... symbols) {
 		return of(colorless, Arrays.asList(symbols));
 	}
 
 	/**
-	 * Returns a new {@code ManaCost} with the given amount of colorless mana
-	 * and other mana symbols. If the {@link Collection} of symbols is empty and
-	 * the amount of colorless is zero, the zero mana cost is returned.
+	 * Returns a {@code ManaCost} with the given amount of colorless mana and
+	 * other mana symbols. If the {@link Collection} of symbols is empty and the
+	 * amount of colorless is zero, the zero mana cost is returned.
+	 * <p>
+	 * The result may be a shared, canonical instance; whether equal costs are
+	 * the same object depends on the cache described in the class
+	 * documentation, so compare them with {@link #equals(Object)}.
 	 */
 	public static ManaCost of(int colorless, Collection<Symbol> symbols) {
 		if (colorless == 0 && symbols.isEmpty()) {
 			return ZERO;
 		}
-		return new StandardManaCost(
-				colorless,
-				orderSymbols(TreeMultiset.create(symbols)));
+		int[] counts = new int[SYMBOLS.length];
+		for (Symbol symbol : symbols) {
+			counts[symbol.ordinal()]++;
+		}
+		return create(colorless, counts);
+	}
+
+	/*
+	 * Returns the canonical instance of the cost. A PackedManaCost is used if
+	 * the cost fits in one, and a StandardManaCost otherwise, so that equal
+	 * costs always have the same representation.
+	 */
+	private static ManaCost create(int colorless, int[] counts) {
+		ManaCost candidate = null;
+		if (0 <= colorless && colorless <= PackedManaCost.MAX_COLORLESS) {
+			boolean fits = true;
+			for (int count : counts) {
+				fits &= count <= PackedManaCost.MAX_COUNT;
+			}
+			if (fits) {
+				candidate = new PackedManaCost(colorless, counts);
+			}
+		}
+		if (candidate == null) {
+			candidate = new StandardManaCost(colorless, orderSymbols(counts));
+		}
+		return CANONICAL.getUnchecked(candidate);
 	}
 
 	/**
-	 * Returns a new {@code ManaCost} as specified by the input {@link String}.
+	 * Returns a {@code ManaCost} as specified by the input {@link String}.
 	 * The input can contain any number of mana symbols in the format specified
 	 * by {@link Symbol#toString()}, with no separators. Symbols do not have to
 	 * be in the order in which they would appear on a card.
+	 * <p>
+	 * The result may be a shared, canonical instance; whether equal costs are
+	 * the same object depends on the cache described in the class
+	 * documentation, so compare them with {@link #equals(Object)}.
 	 * 
 	 * @throws IllegalArgumentException
 	 *             if input contains <code>{0}</code> in combination with other
@@ -147,51 +234,218 @@ public abstract class ManaCost {
 	 *             the symbols are not formatted properly
 	 */
 	public static ManaCost parse(String input) {
-		switch (input) {
-			case "":
-				return EMPTY;
-			case "{0}":
-				return ZERO;
-			default:
+		return parse(input, 0, input.length());
+	}
+
+	/**
+	 * Parses the region {@code [start, end)} of the given input as a
+	 * {@code ManaCost}, exactly as {@link #parse(String)} would parse that
+	 * region as a {@code String}. The input is scanned in place, without
+	 * creating substrings or a {@code String}. Each call still allocates an
+	 * array of symbol counts and a candidate mana cost, which is discarded if
+	 * an equal one is already cached; a cost that does not fit the packed
+	 * form also has its ordered symbols built for the candidate.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             under the same conditions as {@link #parse(String)}
+	 * @throws IndexOutOfBoundsException
+	 *             if the region is not within the input
+	 */
+	public static ManaCost parse(CharSequence input, int start, int end) {
+		if (start < 0 || end > input.length() || start > end) {
+			throw new IndexOutOfBoundsException(
+					"[" + start + ", " + end + ") of " + input.length());
 		}
-		Multiset<Symbol> symbols = TreeMultiset.create();
+		int length = end - start;
+		if (length == 0) {
+			return EMPTY;
+		}
+		if (length == 3 && input.charAt(start) == '{'
+				&& input.charAt(start + 1) == '0'
+				&& input.charAt(start + 2) == '}') {
+			return ZERO;
+		}
+		int[] counts = new int[SYMBOLS.length];
 		int colorless = 0;
-		int begin = 0;
+		int begin = start;
 		do {
 			if (input.charAt(begin) != '{') {
 				throw new IllegalArgumentException(String.format(
-						"expected '{' at position %d in \"%s\"", begin, input));
+						"expected '{' at position %d in \"%s\"", begin - start,
+						input.subSequence(start, end)));
 			}
-			int end = input.indexOf('}', begin + 1);
-			if (end == -1) {
+			int close = begin + 1;
+			while (close < end && input.charAt(close) != '}') {
+				close++;
+			}
+			if (close == end) {
 				throw new IllegalArgumentException(String.format(
-						"no closing '}' in \"%s\"", input));
+						"no closing '}' in \"%s\"", input.subSequence(start, end)));
 			}
-			String part = input.substring(begin, end + 1);
-			Symbol symbol = Symbol.parse(part);
+			Symbol symbol = symbolAt(input, begin, close);
 			if (symbol != null) {
-				symbols.add(symbol);
+				counts[symbol.ordinal()]++;
 			} else {
-				int parsed;
-				try {
-					parsed = Integer.parseInt(input.substring(begin + 1, end));
-				} catch (NumberFormatException e) {
+				long parsed = parseInt(input, begin + 1, close);
+				if (parsed == NOT_AN_INT) {
 					throw new IllegalArgumentException(String.format(
-							"invalid symbol \"%s\" in \"%s\"", part, input));
+							"invalid symbol \"%s\" in \"%s\"",
+							input.subSequence(begin, close + 1),
+							input.subSequence(start, end)));
 				}
 				if (colorless != 0) {
 					throw new IllegalArgumentException(String.format(
-							"multiple colorless symbols in \"%s\"", input));
+							"multiple colorless symbols in \"%s\"",
+							input.subSequence(start, end)));
 				}
 				if (parsed == 0) {
 					throw new IllegalArgumentException(String.format(
-							"{0} used with other symbols in \"%s\"", input));
+							"{0} used with other symbols in \"%s\"",
+							input.subSequence(start, end)));
 				}
-				colorless = parsed;
+				colorless = (int) parsed;
+			}
+			begin = close + 1;
+		} while (begin < end);
+		return create(colorless, counts);
+	}
+
+	/**
+	 * Parses the UTF-8 encoded bytes between the buffer's position and limit
+	 * as a {@code ManaCost}, exactly as {@link #parse(String)} would parse the
+	 * decoded {@code String}. The buffer's position is not changed. Input that
+	 * is entirely ASCII, which includes every valid mana cost, is scanned in
+	 * place without being decoded.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             under the same conditions as {@link #parse(String)}
+	 */
+	public static ManaCost parse(ByteBuffer input) {
+		int position = input.position();
+		int limit = input.limit();
+		for (int i = position; i < limit; i++) {
+			if (input.get(i) < 0) {
+				ByteBuffer slice = input.duplicate();
+				return parse(StandardCharsets.UTF_8.decode(slice).toString());
+			}
+		}
+		return parse(new AsciiSequence(input, position, limit - position), 0,
+				limit - position);
+	}
+
+	private static final Symbol[] SYMBOLS = Symbol.values();
+
+	/*
+	 * Symbols are either "{c}" or "{c/d}" with ASCII characters c and d, and
+	 * are found by indexing on those characters.
+	 */
+	private static final Symbol[] SINGLE_SYMBOLS = new Symbol[128];
+	private static final Symbol[] PAIR_SYMBOLS = new Symbol[128 * 128];
+
+	static {
+		for (Symbol symbol : SYMBOLS) {
+			String s = symbol.toString();
+			if (s.length() == 3) {
+				SINGLE_SYMBOLS[s.charAt(1)] = symbol;
+			} else {
+				assert s.length() == 5 && s.charAt(2) == '/' : s;
+				PAIR_SYMBOLS[s.charAt(1) << 7 | s.charAt(3)] = symbol;
+			}
+		}
+	}
+
+	/*
+	 * Returns the symbol at [open, close], or null if there is none.
+	 */
+	private static Symbol symbolAt(CharSequence input, int open, int close) {
+		switch (close - open) {
+			case 2:
+				char c = input.charAt(open + 1);
+				return c < 128 ? SINGLE_SYMBOLS[c] : null;
+			case 4:
+				char first = input.charAt(open + 1);
+				char second = input.charAt(open + 3);
+				return input.charAt(open + 2) == '/' && first < 128 && second < 128
+						? PAIR_SYMBOLS[first << 7 | second]
+						: null;
+			default:
+				return null;
+		}
+	}
+
+	private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+	/*
+	 * Equivalent to Integer.parseInt(input.subSequence(start, end)
+	 * .toString()), except that NOT_AN_INT is returned instead of throwing.
+	 */
+	private static long parseInt(CharSequence input, int start, int end) {
+		if (start == end) {
+			return NOT_AN_INT;
+		}
+		boolean negative = false;
+		int i = start;
+		char first = input.charAt(i);
+		if (first < '0') {
+			if (first == '-') {
+				negative = true;
+			} else if (first != '+') {
+				return NOT_AN_INT;
+			}
+			if (end - start == 1) {
+				return NOT_AN_INT;
+			}
+			i++;
+		}
+		long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = Character.digit(input.charAt(i), 10);
+			if (digit < 0) {
+				return NOT_AN_INT;
 			}
-			begin = end + 1;
-		} while (begin < input.length());
-		return new StandardManaCost(colorless, orderSymbols(symbols));
+			result = result * 10 + digit;
+			if (result > limit) {
+				return NOT_AN_INT;
+			}
+		}
+		return negative ? -result : result;
+	}
+
+	/*
+	 * A view of ASCII bytes as characters.
+	 */
+	private static final class AsciiSequence implements CharSequence {
+
+		private final ByteBuffer bytes;
+		private final int offset;
+		private final int length;
+
+		AsciiSequence(ByteBuffer bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override public int length() {
+			return length;
+		}
+
+		@Override public char charAt(int index) {
+			return (char) bytes.get(offset + index);
+		}
+
+		@Override public CharSequence subSequence(int start, int end) {
+			return new AsciiSequence(bytes, offset + start, end - start);
+		}
+
+		@Override public String toString() {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
 	}
 
 	private ManaCost() {}
@@ -218,6 +472,13 @@ public abstract class ManaCost {
 	 */
 	public abstract int converted();
 
+	/**
+	 * Returns the number of times the given symbol appears in this mana cost.
+	 */
+	public int count(Symbol symbol) {
+		return symbols().count(symbol);
+	}
+
 	public boolean containsAnyOf(Symbol.Group group) {
 		for (Symbol symbol : symbols().elementSet()) {
 			if (symbol.group() == group) {
@@ -231,6 +492,8 @@ public abstract class ManaCost {
 	 * Returns whether this mana cost is payable with a certain set of colors of
 	 * mana. Equivalent to calling {@link Symbol#payableWith(Set)} on each
 	 * unique
+	 * 
+	 * @see ManaPool#canPay(ManaCost, int)
 	 */
 	public boolean payableWith(Set<Color> mana) {
 		return Symbol.payableWith(symbols().elementSet(), mana);
@@ -317,7 +580,7 @@ public abstract class ManaCost {
 		}
 
 		@Override public int hashCode() {
-			return Objects.hash(colorless, symbols);
+			return 31 * colorless + symbols.hashCode();
 		}
 
 		@Override public boolean equals(Object obj) {
@@ -333,22 +596,161 @@ public abstract class ManaCost {
 		}
 
 		@Override public String toString() {
-			StringBuilder builder = new StringBuilder();
-			if (colorless != 0) {
-				builder.append('{').append(colorless).append('}');
-			}
-			StringBuilder variables = new StringBuilder();
-			for (Symbol symbol : symbols) {
-				if (symbol.group() == Symbol.Group.VARIABLE) {
-					variables.append(symbol);
+			return format(colorless, symbols);
+		}
+	}
+
+	/**
+	 * A mana cost whose symbol counts are packed into two words, four bits per
+	 * {@link Symbol} ordinal, with the amount of colorless mana in the top
+	 * sixteen bits of the second word. Colors, the number of symbols of each
+	 * color, and the groups present are computed once, so most queries are a
+	 * shift and a mask. The ordered {@link #symbols()} are only built when
+	 * first requested.
+	 * <p>
+	 * Costs with a symbol repeated more than 15 times or more than 65535
+	 * colorless mana use {@link StandardManaCost} instead.
+	 */
+	private static final class PackedManaCost extends ManaCost {
+
+		static final int MAX_COUNT = 0xF;
+		static final int MAX_COLORLESS = 0xFFFF;
+
+		private static final int COLORLESS_SHIFT = 48;
+
+		static {
+			assert SYMBOLS.length <= 16 + COLORLESS_SHIFT / 4;
+		}
+
+		private final long low;
+		private final long high;
+		private final int converted;
+		// eight bits per color
+		private final long pips;
+		// color mask in the low byte, group mask in the next
+		private final int masks;
+
+		// derived lazily; racy but idempotent
+		private ImmutableMultiset<Symbol> symbols;
+
+		private PackedManaCost(int colorless, int[] counts) {
+			long low = 0;
+			long high = (long) colorless << COLORLESS_SHIFT;
+			int converted = colorless;
+			long pips = 0;
+			int masks = 0;
+			int hybrids = 0;
+			for (int i = 0; i < counts.length; i++) {
+				int count = counts[i];
+				if (count == 0) {
+					continue;
+				}
+				if (i < 16) {
+					low |= (long) count << (i * 4);
 				} else {
-					builder.append(symbol);
+					high |= (long) count << ((i - 16) * 4);
+				}
+				Symbol symbol = SYMBOLS[i];
+				converted += symbol.converted() * count;
+				for (Color color : symbol.colors()) {
+					pips += (long) count << (color.ordinal() * 8);
+					masks |= 1 << color.ordinal();
+				}
+				masks |= 1 << (8 + symbol.group().ordinal());
+				if (symbol.group() == Group.HYBRID) {
+					hybrids++;
+				}
+			}
+			this.low = low;
+			this.high = high;
+			this.converted = converted;
+			this.pips = pips;
+			this.masks = masks;
+			if (hybrids > 3) {
+				// ordering more than three hybrids can fail; fail now
+				this.symbols = orderSymbols(counts);
+			}
+		}
+
+		@Override public ImmutableSet<Color> colors() {
+			return ColorSet.of(masks & 0xFF).asImmutableSet();
+		}
+
+		@Override public int colorless() {
+			return (int) (high >>> COLORLESS_SHIFT);
+		}
+
+		@Override public ImmutableMultiset<Symbol> symbols() {
+			ImmutableMultiset<Symbol> result = symbols;
+			if (result == null) {
+				int[] counts = new int[SYMBOLS.length];
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] = count(i);
 				}
+				result = orderSymbols(counts);
+				symbols = result;
 			}
-			return variables.toString() + builder.toString();
+			return result;
+		}
+
+		@Override public int converted() {
+			return converted;
+		}
+
+		@Override public int count(Symbol symbol) {
+			return count(symbol.ordinal());
+		}
+
+		private int count(int ordinal) {
+			return ordinal < 16
+					? (int) (low >>> (ordinal * 4)) & MAX_COUNT
+					: (int) (high >>> ((ordinal - 16) * 4)) & MAX_COUNT;
+		}
+
+		@Override public int countColor(Color color) {
+			return (int) (pips >>> (color.ordinal() * 8)) & 0xFF;
+		}
+
+		@Override public boolean containsAnyOf(Group group) {
+			return (masks & 1 << (8 + group.ordinal())) != 0;
+		}
+
+		@Override public int hashCode() {
+			return 31 * (int) (low ^ (low >>> 32)) + (int) (high ^ (high >>> 32));
+		}
+
+		@Override public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PackedManaCost)) {
+				return false;
+			}
+			PackedManaCost other = (PackedManaCost) obj;
+			return low == other.low && high == other.high;
+		}
+
+		@Override public String toString() {
+			return format(colorless(), symbols());
 		}
 	}
 
+	private static String format(int colorless, ImmutableMultiset<Symbol> symbols) {
+		StringBuilder builder = new StringBuilder();
+		if (colorless != 0) {
+			builder.append('{').append(colorless).append('}');
+		}
+		StringBuilder variables = new StringBuilder();
+		for (Symbol symbol : symbols) {
+			if (symbol.group() == Symbol.Group.VARIABLE) {
+				variables.append(symbol);
+			} else {
+				builder.append(symbol);
+			}
+		}
+		return variables.toString() + builder.toString();
+	}
+
 	private static class SpecialManaCost extends ManaCost {
 
 		private final String representation;
@@ -378,45 +780,137 @@ public abstract class ManaCost {
 		}
 	}
 
-	public static Map<Multiset<Symbol>, ImmutableMultiset<Symbol>> precalculated =
-			new MapMaker().makeMap();
-
 	/*
 	 * All the methods from here on out are weird and black-boxy, and I'm not
 	 * entirely happy with them. They work well, but they can probably be
 	 * improved.
 	 */
 
-	private static ImmutableMultiset<Symbol> orderSymbols(
-			Multiset<Symbol> symbols) {
-		ImmutableMultiset<Symbol> result = precalculated.get(symbols);
-		if (result == null) {
-			int distinct = symbols.elementSet().size();
-			if (distinct < 2) {
-				return ImmutableMultiset.copyOf(symbols);
-			}
-			Builder<Symbol> builder = ImmutableMultiset.builder();
-			ListMultimap<Group, Symbol> groups = Multimaps.newListMultimap(
-					new EnumMap<Symbol.Group, Collection<Symbol>>(Symbol.Group.class),
-					new Supplier<List<Symbol>>() {
-						@Override public List<Symbol> get() {
-							return new ArrayList<>();
-						}
-					});
-			for (Symbol symbol : symbols.elementSet()) {
-				groups.put(symbol.group(), symbol);
-			}
-			for (Entry<Group, List<Symbol>> entry : Multimaps.asMap(groups).entrySet()) {
-				List<Symbol> inGroup = entry.getValue();
-				order(inGroup);
-				for (Symbol symbol : inGroup) {
-					builder.addCopies(symbol, symbols.count(symbol));
+	/*
+	 * The order of every set of colors, indexed by a mask of color ordinals, as
+	 * given by order(). The groups with one symbol per color are checked
+	 * against this table when the class is initialized; it is here mostly so
+	 * the orders can be read at a glance.
+	 */
+	private static final String[] COLOR_ORDERS = {
+		"", "W", "U", "WU", "B", "WB", "UB", "WUB",
+		"R", "RW", "UR", "RWU", "BR", "WBR", "UBR", "WUBR",
+		"G", "GW", "GU", "GWU", "BG", "BGW", "GUB", "GWUB",
+		"RG", "RGW", "URG", "RGWU", "BRG", "BRGW", "UBRG", "WUBRG",
+	};
+
+	/*
+	 * The symbols of each group, in natural order, indexed by group ordinal.
+	 */
+	private static final Symbol[][] GROUP_MEMBERS;
+
+	/*
+	 * The canonical order of every subset of each group's symbols, indexed by
+	 * group ordinal and then by a mask of positions in GROUP_MEMBERS. Entries
+	 * are null for subsets that order() cannot handle.
+	 */
+	private static final Symbol[][][] ORDERS;
+
+	static {
+		Group[] groups = Group.values();
+		GROUP_MEMBERS = new Symbol[groups.length][];
+		ORDERS = new Symbol[groups.length][][];
+		for (Group group : groups) {
+			List<Symbol> members = new ArrayList<>();
+			for (Symbol symbol : SYMBOLS) {
+				if (symbol.group() == group) {
+					members.add(symbol);
+				}
+			}
+			Symbol[][] orders = new Symbol[1 << members.size()][];
+			for (int mask = 1; mask < orders.length; mask++) {
+				List<Symbol> subset = new ArrayList<>();
+				for (int k = 0; k < members.size(); k++) {
+					if ((mask & 1 << k) != 0) {
+						subset.add(members.get(k));
+					}
+				}
+				if (isOrderable(subset)) {
+					order(subset);
+					orders[mask] = subset.toArray(new Symbol[subset.size()]);
+				}
+			}
+			GROUP_MEMBERS[group.ordinal()] = members.toArray(new Symbol[members.size()]);
+			ORDERS[group.ordinal()] = orders;
+		}
+		checkColorOrders();
+	}
+
+	/*
+	 * Orders the symbols given as counts indexed by ordinal, group by group,
+	 * by looking up each group's subset in ORDERS.
+	 */
+	private static ImmutableMultiset<Symbol> orderSymbols(int[] counts) {
+		Builder<Symbol> builder = ImmutableMultiset.builder();
+		for (int g = 0; g < GROUP_MEMBERS.length; g++) {
+			Symbol[] members = GROUP_MEMBERS[g];
+			int mask = 0;
+			for (int k = 0; k < members.length; k++) {
+				if (counts[members[k].ordinal()] != 0) {
+					mask |= 1 << k;
+				}
+			}
+			if (mask == 0) {
+				continue;
+			}
+			Symbol[] ordered = ORDERS[g][mask];
+			if (ordered == null) {
+				// fails the same way it always has
+				List<Symbol> subset = new ArrayList<>();
+				for (int k = 0; k < members.length; k++) {
+					if ((mask & 1 << k) != 0) {
+						subset.add(members[k]);
+					}
+				}
+				order(subset);
+				ordered = subset.toArray(new Symbol[subset.size()]);
+			}
+			for (Symbol symbol : ordered) {
+				builder.addCopies(symbol, counts[symbol.ordinal()]);
+			}
+		}
+		return builder.build();
+	}
+
+	private static boolean isOrderable(List<Symbol> symbols) {
+		int size = symbols.size();
+		if (size == 4) {
+			EnumSet<Color> colors = EnumSet.noneOf(Color.class);
+			for (Symbol symbol : symbols) {
+				colors.add(getColor(symbol));
+			}
+			return colors.size() == 4;
+		}
+		return size <= 5;
+	}
+
+	/*
+	 * Throws if the order of any subset of a group with one symbol per color
+	 * differs from COLOR_ORDERS.
+	 */
+	private static void checkColorOrders() {
+		for (int g = 0; g < GROUP_MEMBERS.length; g++) {
+			Symbol[] members = GROUP_MEMBERS[g];
+			if (members.length != Color.values().length) {
+				continue;
+			}
+			for (int mask = 1; mask < ORDERS[g].length; mask++) {
+				StringBuilder order = new StringBuilder();
+				for (Symbol symbol : ORDERS[g][mask]) {
+					order.append("WUBRG".charAt(getColor(symbol).ordinal()));
+				}
+				if (!order.toString().equals(COLOR_ORDERS[mask])) {
+					throw new AssertionError(String.format(
+							"%s symbols ordered %s, expected %s",
+							Group.values()[g], order, COLOR_ORDERS[mask]));
 				}
 			}
-			result = builder.build();
-			precalculated.put(result, result);
 		}
-		return result;
 	}
 
 	/*
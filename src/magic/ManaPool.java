@@ -0,0 +1,448 @@
+package magic;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable amount of mana of each color, plus colorless mana, that can be
+ * spent on {@link ManaCost}s. Unlike {@link ManaCost#payableWith(java.util.Set)},
+ * which only checks that the right colors are present, a {@code ManaPool}
+ * checks that there is enough of each: every symbol needs its own mana, hybrid
+ * symbols are paid with one of their colors, monocolored hybrid symbols with
+ * their color or two mana of any type, Phyrexian symbols with their color or
+ * two life, <code>{C}</code> only with colorless mana, and the constant
+ * colorless amount with any mana left over. <code>{X}</code> is taken to be
+ * zero.
+ * <p>
+ * The solver does not search over the symbols of a cost. The choices for
+ * hybrid and Phyrexian symbols are an assignment of demands to six resources
+ * (the five colors and the life budget), which is possible exactly when, for
+ * each of the 64 sets of resources, the symbols that can only be paid from
+ * that set need no more than it holds. Monocolored hybrid symbols are then
+ * paid with their color as often as that condition allows, which is always as
+ * often as possible, and Phyrexian symbols are paid with life as often as the
+ * budget allows. So deciding whether a cost can be paid takes a fixed number
+ * of steps, regardless of the cost.
+ */
+public final class ManaPool {
+
+	// mana types: the colors by ordinal, then colorless
+	private static final int TYPES = 6;
+	private static final int COLORLESS = 5;
+
+	// resources: the colors by ordinal, then the life budget
+	private static final int RESOURCES = 6;
+	private static final int LIFE = 5;
+	private static final int RESOURCE_SETS = 1 << RESOURCES;
+
+	/**
+	 * The pool with no mana.
+	 */
+	public static final ManaPool EMPTY = new ManaPool(new int[TYPES]);
+
+	private static final Symbol[] SYMBOLS = Symbol.values();
+	private static final Color[] COLORS = Color.values();
+
+	/*
+	 * The mask of the colors of each symbol, indexed by ordinal.
+	 */
+	private static final int[] SYMBOL_COLORS = new int[SYMBOLS.length];
+
+	static {
+		for (Symbol symbol : SYMBOLS) {
+			for (Color color : symbol.colors()) {
+				SYMBOL_COLORS[symbol.ordinal()] |= 1 << color.ordinal();
+			}
+		}
+	}
+
+	// indexed by color ordinal, then colorless
+	private final int[] amounts;
+
+	private ManaPool(int[] amounts) {
+		this.amounts = amounts;
+	}
+
+	/**
+	 * Returns a pool with the given amounts of mana of each color and of
+	 * colorless mana.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if any amount is negative
+	 */
+	public static ManaPool of(int white, int blue, int black, int red,
+			int green, int colorless) {
+		int[] amounts = { white, blue, black, red, green, colorless };
+		for (int amount : amounts) {
+			checkArgument(amount >= 0, "negative amount of mana: %s", amount);
+		}
+		return new ManaPool(amounts);
+	}
+
+	/**
+	 * Returns a pool with the given amount of mana of a single color.
+	 */
+	public static ManaPool of(Color color, int amount) {
+		return EMPTY.plus(color, amount);
+	}
+
+	/**
+	 * Returns a pool with this pool's mana plus the given amount of the given
+	 * color.
+	 */
+	public ManaPool plus(Color color, int amount) {
+		return plus(color.ordinal(), amount);
+	}
+
+	/**
+	 * Returns a pool with this pool's mana plus the given amount of colorless
+	 * mana.
+	 */
+	public ManaPool plusColorless(int amount) {
+		return plus(COLORLESS, amount);
+	}
+
+	private ManaPool plus(int type, int amount) {
+		checkArgument(amount >= 0, "negative amount of mana: %s", amount);
+		int[] result = amounts.clone();
+		result[type] += amount;
+		return new ManaPool(result);
+	}
+
+	/**
+	 * Returns the amount of mana of the given color.
+	 */
+	public int count(Color color) {
+		return amounts[color.ordinal()];
+	}
+
+	/**
+	 * Returns the amount of colorless mana.
+	 */
+	public int colorless() {
+		return amounts[COLORLESS];
+	}
+
+	/**
+	 * Returns the total amount of mana of all types.
+	 */
+	public int total() {
+		int total = 0;
+		for (int amount : amounts) {
+			total += amount;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns whether the given cost can be paid with this mana, paying no
+	 * life.
+	 */
+	public boolean canPay(ManaCost cost) {
+		return canPay(cost, 0);
+	}
+
+	/**
+	 * Returns whether the given cost can be paid with this mana, paying at most
+	 * the given amount of life for Phyrexian symbols.
+	 */
+	public boolean canPay(ManaCost cost, int life) {
+		return new Solver(cost, life).solve();
+	}
+
+	/**
+	 * Returns the least amount of mana from this pool with which the given
+	 * cost can be paid, paying at most the given amount of life for Phyrexian
+	 * symbols, or {@code -1} if it cannot be paid. Any payment returned by
+	 * {@link #pay} spends exactly this much.
+	 */
+	public int minimumMana(ManaCost cost, int life) {
+		Solver solver = new Solver(cost, life);
+		return solver.solve() ? solver.required : -1;
+	}
+
+	/**
+	 * Returns one way of paying the given cost with this mana, paying at most
+	 * the given amount of life for Phyrexian symbols, or {@code null} if the
+	 * cost cannot be paid. The payment uses as much life as the budget allows,
+	 * and pays generic costs with colorless mana before colored mana.
+	 */
+	public @Nullable Payment pay(ManaCost cost, int life) {
+		Solver solver = new Solver(cost, life);
+		return solver.solve() ? solver.build() : null;
+	}
+
+	@Override public boolean equals(Object obj) {
+		return obj instanceof ManaPool
+				&& Arrays.equals(amounts, ((ManaPool) obj).amounts);
+	}
+
+	@Override public int hashCode() {
+		return Arrays.hashCode(amounts);
+	}
+
+	/**
+	 * Returns the mana in this pool as mana symbols, colors first, in the
+	 * order White, Blue, Black, Red, Green, followed by <code>{C}</code> for
+	 * each colorless mana. For example: <code>{W}{W}{G}{C}</code>.
+	 */
+	@Override public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Color color : COLORS) {
+			for (int i = 0; i < amounts[color.ordinal()]; i++) {
+				builder.append('{').append(color.code()).append('}');
+			}
+		}
+		for (int i = 0; i < amounts[COLORLESS]; i++) {
+			builder.append(Symbol.COLORLESS);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * The mana and life spent on a cost by {@link ManaPool#pay}.
+	 */
+	public static final class Payment {
+
+		private final ManaPool mana;
+		private final int life;
+		private final ManaPool remaining;
+
+		private Payment(ManaPool mana, int life, ManaPool remaining) {
+			this.mana = mana;
+			this.life = life;
+			this.remaining = remaining;
+		}
+
+		/**
+		 * Returns the mana spent.
+		 */
+		public ManaPool mana() {
+			return mana;
+		}
+
+		/**
+		 * Returns the life paid.
+		 */
+		public int life() {
+			return life;
+		}
+
+		/**
+		 * Returns the mana left in the pool after paying.
+		 */
+		public ManaPool remaining() {
+			return remaining;
+		}
+
+		@Override public String toString() {
+			return mana + (life == 0 ? "" : " and " + life + " life");
+		}
+	}
+
+	/*
+	 * The state of one payment. The capacity of the LIFE resource is counted
+	 * in payments of two life.
+	 */
+	private final class Solver {
+
+		private final int[] capacity = new int[RESOURCES];
+		private final int[] spent = new int[TYPES];
+		private int colorless;
+		private int generic;
+
+		// hybrid and Phyrexian symbols, indexed by the set they can be paid from
+		private final int[] demand = new int[RESOURCE_SETS];
+		private final int[] monocolored = new int[COLORS.length];
+		private int phyrexian;
+		private boolean insufficient;
+		// the mana needed, once solved
+		private int required;
+
+		Solver(ManaCost cost, int life) {
+			System.arraycopy(amounts, 0, capacity, 0, COLORS.length);
+			capacity[LIFE] = Math.max(life, 0) / 2;
+			colorless = amounts[COLORLESS];
+			generic = cost.colorless();
+			for (Symbol symbol : SYMBOLS) {
+				int count = cost.count(symbol);
+				if (count != 0) {
+					add(symbol, count);
+				}
+			}
+		}
+
+		private void add(Symbol symbol, int count) {
+			int colors = SYMBOL_COLORS[symbol.ordinal()];
+			int color = Integer.numberOfTrailingZeros(colors);
+			switch (symbol.group()) {
+				case PRIMARY:
+					capacity[color] -= count;
+					spent[color] += count;
+					insufficient |= capacity[color] < 0;
+					break;
+				case COLORLESS:
+					colorless -= count;
+					spent[COLORLESS] += count;
+					insufficient |= colorless < 0;
+					break;
+				case HYBRID:
+					demand[colors] += count;
+					break;
+				case PHYREXIAN:
+					demand[colors | 1 << LIFE] += count;
+					phyrexian += count;
+					break;
+				case MONOCOLORED_HYBRID:
+					monocolored[color] += count;
+					break;
+				case VARIABLE:
+					break;
+				default:
+					throw new AssertionError(symbol);
+			}
+		}
+
+		/*
+		 * Decides how monocolored hybrid symbols are paid, and returns whether
+		 * the cost can be paid at all.
+		 */
+		boolean solve() {
+			if (insufficient) {
+				return false;
+			}
+			int[] slack = slack();
+			if (slack == null) {
+				return false;
+			}
+
+			// pay monocolored hybrid symbols with their color while possible
+			for (int c = 0; c < COLORS.length; c++) {
+				int paid = Math.min(monocolored[c], minimumSlack(slack, c));
+				capacity[c] -= paid;
+				spent[c] += paid;
+				generic += 2 * (monocolored[c] - paid);
+				if (paid != 0) {
+					slack = slack();
+				}
+			}
+
+			// everything in demand is paid with colored mana, except for as
+			// many Phyrexian symbols as there is life for
+			required = generic - Math.min(phyrexian, capacity[LIFE]);
+			for (int t = 0; t < TYPES; t++) {
+				required += spent[t];
+			}
+			for (int set = 0; set < RESOURCE_SETS; set++) {
+				required += demand[set];
+			}
+			return required <= total();
+		}
+
+		/*
+		 * Returns, for each resource set, its capacity minus the demand that
+		 * must be paid from within it, or null if that is negative for any set,
+		 * in which case the demand cannot be met.
+		 */
+		private @Nullable int[] slack() {
+			int[] result = new int[RESOURCE_SETS];
+			for (int set = 0; set < RESOURCE_SETS; set++) {
+				result[set] = -demand[set];
+			}
+			// sum the demand over subsets
+			for (int r = 0; r < RESOURCES; r++) {
+				for (int set = 0; set < RESOURCE_SETS; set++) {
+					if ((set & 1 << r) != 0) {
+						result[set] += result[set ^ 1 << r];
+					}
+				}
+			}
+			for (int set = 0; set < RESOURCE_SETS; set++) {
+				for (int r = 0; r < RESOURCES; r++) {
+					if ((set & 1 << r) != 0) {
+						result[set] += capacity[r];
+					}
+				}
+				if (result[set] < 0) {
+					return null;
+				}
+			}
+			return result;
+		}
+
+		private int minimumSlack(int[] slack, int resource) {
+			int result = Integer.MAX_VALUE;
+			for (int set = 0; set < RESOURCE_SETS; set++) {
+				if ((set & 1 << resource) != 0) {
+					result = Math.min(result, slack[set]);
+				}
+			}
+			return result;
+		}
+
+		/*
+		 * Assigns each symbol in demand to a resource, one at a time, checking
+		 * that the rest can still be paid after each choice, then pays the
+		 * generic mana. Phyrexian symbols, whose sets include LIFE and so come
+		 * last, are assigned first, and take life while they can.
+		 */
+		Payment build() {
+			int lifePaid = 0;
+			for (int set = RESOURCE_SETS - 1; set > 0; set--) {
+				while (demand[set] != 0) {
+					// each set has two resources, and the first one that
+					// leaves the rest payable is used
+					int preferred = 31 - Integer.numberOfLeadingZeros(set);
+					int other = Integer.numberOfTrailingZeros(set);
+					int resource = isPayableWith(set, preferred) ? preferred : other;
+					demand[set]--;
+					capacity[resource]--;
+					if (resource == LIFE) {
+						lifePaid++;
+					} else {
+						spent[resource]++;
+					}
+				}
+			}
+
+			// then generic mana, colorless first
+			int paid = Math.min(generic, colorless);
+			spent[COLORLESS] += paid;
+			generic -= paid;
+			for (int c = 0; c < COLORS.length && generic > 0; c++) {
+				paid = Math.min(generic, capacity[c]);
+				spent[c] += paid;
+				capacity[c] -= paid;
+				generic -= paid;
+			}
+			assert generic == 0;
+
+			int[] remaining = new int[TYPES];
+			for (int t = 0; t < TYPES; t++) {
+				remaining[t] = amounts[t] - spent[t];
+			}
+			return new Payment(new ManaPool(spent), 2 * lifePaid,
+					new ManaPool(remaining));
+		}
+
+		/*
+		 * Returns whether the rest could still be paid after paying one symbol
+		 * that must be paid from the given set with the given resource.
+		 */
+		private boolean isPayableWith(int set, int resource) {
+			if (capacity[resource] == 0) {
+				return false;
+			}
+			demand[set]--;
+			capacity[resource]--;
+			boolean result = slack() != null;
+			demand[set]++;
+			capacity[resource]++;
+			return result;
+		}
+	}
+
+}
@@ -212,8 +212,9 @@ public enum Symbol {
 	 */
 	public static boolean payableWith(Collection<Symbol> symbols,
 			Set<Color> mana) {
+		int mask = ColorSet.mask(mana);
 		for (Symbol symbol : symbols) {
-			if (!symbol.payableWith(mana)) {
+			if (!symbol.internal.payableWith(mask)) {
 				return false;
 			}
 		}
@@ -1,6 +1,5 @@
 package magic;
 
-import java.util.Collections;
 import java.util.Set;
 
 import com.google.common.base.CaseFormat;
@@ -13,6 +12,7 @@ import com.google.common.collect.ImmutableSet;
 abstract class SymbolLogic {
 
 	private final ImmutableSet<Color> colors;
+	private final int mask;
 	private final int converted;
 	private final String representation;
 	private final Symbol.Group group;
@@ -27,6 +27,7 @@ abstract class SymbolLogic {
 
 	private SymbolLogic(ImmutableSet<Color> colors, int converted, String representation) {
 		this.colors = colors;
+		this.mask = ColorSet.mask(colors);
 		this.converted = converted;
 		this.representation = representation;
 		this.group = Symbol.Group.valueOf(
@@ -42,11 +43,23 @@ abstract class SymbolLogic {
 		return colors;
 	}
 
+	int mask() {
+		return mask;
+	}
+
 	@Override public String toString() {
 		return representation;
 	}
 
-	public abstract boolean payableWith(Set<Color> mana);
+	public boolean payableWith(Set<Color> mana) {
+		return payableWith(ColorSet.mask(mana));
+	}
+
+	/**
+	 * Returns whether the symbol can be paid with the colors of mana in the
+	 * given {@link ColorSet#mask() mask}.
+	 */
+	abstract boolean payableWith(int mana);
 	
 	static abstract class Monocolored extends SymbolLogic {
 
@@ -69,8 +82,8 @@ abstract class SymbolLogic {
 			super(color, 1, String.format("{%c}", color.code()));
 		}
 
-		@Override public boolean payableWith(Set<Color> mana) {
-			return mana.contains(color());
+		@Override boolean payableWith(int mana) {
+			return (mana & mask()) != 0;
 		}
 	}
 
@@ -80,8 +93,8 @@ abstract class SymbolLogic {
 			super(first, second, 1, String.format("{%c/%c}", first.code(), second.code()));
 		}
 
-		@Override public boolean payableWith(Set<Color> mana) {
-			return !Collections.disjoint(mana, colors());
+		@Override boolean payableWith(int mana) {
+			return (mana & mask()) != 0;
 		}
 	}
 
@@ -99,7 +112,7 @@ abstract class SymbolLogic {
 			super(first, converted, String.format("{%c/%s}", first.code(), second));
 		}
 
-		@Override public boolean payableWith(Set<Color> mana) {
+		@Override boolean payableWith(int mana) {
 			return true;
 		}
 	}
@@ -128,7 +141,7 @@ abstract class SymbolLogic {
 			super(ImmutableSet.<Color> of(), 0, String.format("{%c}", symbol));
 		}
 
-		@Override public boolean payableWith(Set<Color> mana) {
+		@Override boolean payableWith(int mana) {
 			return true;
 		}
 	}
@@ -139,7 +152,7 @@ abstract class SymbolLogic {
 			super(ImmutableSet.<Color> of(), 0, "{C}");
 		}
 
-		@Override public boolean payableWith(Set<Color> mana) {
+		@Override boolean payableWith(int mana) {
 			return true;
 		}
 	}
@@ -0,0 +1,320 @@
+package magic.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.Color;
+import magic.Expansion;
+import magic.Expression;
+import magic.Link;
+import magic.Link.Layout;
+import magic.ManaCost;
+import magic.Supertype;
+import magic.Symbol;
+import magic.Type;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+/**
+ * Simple implementation of {@link Card}. All attributes are immutable except
+ * for the {@link Link}, which can be set exactly once with
+ * {@link #link(SimpleCard, SimpleCard, Layout)} after both halves have been
+ * built.
+ */
+public final class SimpleCard extends AbstractCard {
+
+	private static final Comparator<SimplePrinting.Builder> BY_COLLECTOR_NUMBER =
+			new Comparator<SimplePrinting.Builder>() {
+				@Override public int compare(SimplePrinting.Builder o1,
+						SimplePrinting.Builder o2) {
+					return o1.collectorNumber().compareTo(o2.collectorNumber());
+				}
+			};
+
+	private final String name;
+	private final ManaCost manaCost;
+	private final ImmutableSet<Color> colorIndicator;
+	private final ImmutableSet<Supertype> supertypes;
+	private final ImmutableSet<Type> types;
+	private final ImmutableSet<String> subtypes;
+	private final String text;
+	private final @Nullable Expression power;
+	private final @Nullable Expression toughness;
+	private final @Nullable Integer loyalty;
+	private final ImmutableListMultimap<Expansion, SimplePrinting> printings;
+
+	private volatile ImmutableSet<Color> colorIdentity;
+	private volatile @Nullable Link link;
+
+	private SimpleCard(Builder builder) {
+		this.name = checkNotNull(builder.name, "name");
+		this.manaCost = builder.manaCost;
+		this.colorIndicator = Color.INTERNER.intern(builder.colorIndicator);
+		this.supertypes = Sets.immutableEnumSet(builder.supertypes);
+		this.types = Sets.immutableEnumSet(builder.types);
+		checkArgument(!types.isEmpty(), "%s has no types", name);
+		this.subtypes = ImmutableSet.copyOf(builder.subtypes);
+		this.text = builder.text;
+		checkArgument((builder.power == null) == (builder.toughness == null),
+				"%s has only one of power and toughness", name);
+		this.power = builder.power;
+		this.toughness = builder.toughness;
+		this.loyalty = builder.loyalty;
+		this.colorIdentity = builder.colorIdentity == null
+				? computeColorIdentity()
+				: Color.INTERNER.intern(builder.colorIdentity);
+		this.printings = buildPrintings(builder.printings);
+	}
+
+	/**
+	 * Returns a new {@link Builder}.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Links two halves of a two-part card. Each half's color identity is
+	 * updated to include the other's.
+	 *
+	 * @throws IllegalStateException
+	 *             if either card is already linked
+	 */
+	public static void link(SimpleCard first, SimpleCard second, Layout layout) {
+		checkArgument(first != second, "cannot link %s to itself", first);
+		synchronized (SimpleCard.class) {
+			checkState(first.link == null, "%s is already linked", first);
+			checkState(second.link == null, "%s is already linked", second);
+			first.link = SimpleLink.create(second, layout, true);
+			second.link = SimpleLink.create(first, layout, false);
+		}
+		ImmutableSet<Color> identity = Color.INTERNER.intern(
+				Sets.union(first.colorIdentity, second.colorIdentity));
+		first.colorIdentity = identity;
+		second.colorIdentity = identity;
+	}
+
+	private ImmutableSet<Color> computeColorIdentity() {
+		Set<Color> result = EnumSet.noneOf(Color.class);
+		result.addAll(manaCost.colors());
+		result.addAll(colorIndicator);
+		for (int open = text.indexOf('{'); open != -1; open = text.indexOf('{', open + 1)) {
+			int close = text.indexOf('}', open);
+			if (close == -1) {
+				break;
+			}
+			Symbol symbol = Symbol.parse(text.substring(open, close + 1));
+			if (symbol != null) {
+				result.addAll(symbol.colors());
+			}
+		}
+		return Color.INTERNER.intern(result);
+	}
+
+	/*
+	 * Groups the printings by expansion, in expansion order. Within an
+	 * expansion, printings are ordered by collector number when every printing
+	 * has one, and otherwise in the order they were added; the variation index
+	 * is the position in that order.
+	 */
+	private ImmutableListMultimap<Expansion, SimplePrinting> buildPrintings(
+			List<SimplePrinting.Builder> builders) {
+		Map<Expansion, List<SimplePrinting.Builder>> byExpansion =
+				new LinkedHashMap<>();
+		for (SimplePrinting.Builder printing : builders) {
+			List<SimplePrinting.Builder> list = byExpansion.get(printing.expansion());
+			if (list == null) {
+				list = new ArrayList<>(1);
+				byExpansion.put(printing.expansion(), list);
+			}
+			list.add(printing);
+		}
+		ImmutableListMultimap.Builder<Expansion, SimplePrinting> result =
+				ImmutableListMultimap.builder();
+		for (Expansion expansion : Ordering.natural().sortedCopy(byExpansion.keySet())) {
+			List<SimplePrinting.Builder> list = byExpansion.get(expansion);
+			if (list.size() > 1 && allHaveCollectorNumbers(list)) {
+				Collections.sort(list, BY_COLLECTOR_NUMBER);
+			}
+			for (int i = 0; i < list.size(); i++) {
+				result.put(expansion, new SimplePrinting(this, list.get(i), i));
+			}
+		}
+		return result.build();
+	}
+
+	private static boolean allHaveCollectorNumbers(List<SimplePrinting.Builder> list) {
+		for (SimplePrinting.Builder printing : list) {
+			if (printing.collectorNumber() == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override public String name() {
+		return name;
+	}
+
+	@Override public ManaCost manaCost() {
+		return manaCost;
+	}
+
+	@Override public ImmutableSet<Color> colorIndicator() {
+		return colorIndicator;
+	}
+
+	@Override public ImmutableSet<Supertype> supertypes() {
+		return supertypes;
+	}
+
+	@Override public ImmutableSet<Type> types() {
+		return types;
+	}
+
+	@Override public ImmutableSet<String> subtypes() {
+		return subtypes;
+	}
+
+	@Override public String text() {
+		return text;
+	}
+
+	@Override public @Nullable Expression power() {
+		return power;
+	}
+
+	@Override public @Nullable Expression toughness() {
+		return toughness;
+	}
+
+	@Override public @Nullable Integer loyalty() {
+		return loyalty;
+	}
+
+	@Override public @Nullable Link link() {
+		return link;
+	}
+
+	@Override public ImmutableSet<Color> colorIdentity() {
+		return colorIdentity;
+	}
+
+	@Override public ImmutableListMultimap<Expansion, SimplePrinting> printings() {
+		return printings;
+	}
+
+	/**
+	 * A builder for {@link SimpleCard}. A card's mana cost defaults to
+	 * {@link ManaCost#EMPTY} and its text to the empty string. If no color
+	 * identity is given, it is computed from the mana cost, color indicator and
+	 * the mana symbols in the card's text.
+	 */
+	public static final class Builder {
+
+		private String name;
+		private ManaCost manaCost = ManaCost.EMPTY;
+		private Set<Color> colorIndicator = EnumSet.noneOf(Color.class);
+		private Set<Supertype> supertypes = EnumSet.noneOf(Supertype.class);
+		private Set<Type> types = EnumSet.noneOf(Type.class);
+		private List<String> subtypes = new ArrayList<>();
+		private String text = "";
+		private Expression power;
+		private Expression toughness;
+		private Integer loyalty;
+		private Set<Color> colorIdentity;
+		private final List<SimplePrinting.Builder> printings = new ArrayList<>();
+
+		private Builder() {}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder manaCost(ManaCost manaCost) {
+			this.manaCost = checkNotNull(manaCost);
+			return this;
+		}
+
+		public Builder colorIndicator(Set<Color> colorIndicator) {
+			this.colorIndicator = checkNotNull(colorIndicator);
+			return this;
+		}
+
+		public Builder supertypes(Set<Supertype> supertypes) {
+			this.supertypes = checkNotNull(supertypes);
+			return this;
+		}
+
+		public Builder types(Set<Type> types) {
+			this.types = checkNotNull(types);
+			return this;
+		}
+
+		public Builder subtypes(List<String> subtypes) {
+			this.subtypes = checkNotNull(subtypes);
+			return this;
+		}
+
+		public Builder text(String text) {
+			this.text = checkNotNull(text);
+			return this;
+		}
+
+		public Builder power(@Nullable Expression power) {
+			this.power = power;
+			return this;
+		}
+
+		public Builder toughness(@Nullable Expression toughness) {
+			this.toughness = toughness;
+			return this;
+		}
+
+		public Builder loyalty(@Nullable Integer loyalty) {
+			this.loyalty = loyalty;
+			return this;
+		}
+
+		public Builder colorIdentity(@Nullable Set<Color> colorIdentity) {
+			this.colorIdentity = colorIdentity;
+			return this;
+		}
+
+		public Builder addPrinting(SimplePrinting.Builder printing) {
+			printings.add(checkNotNull(printing));
+			return this;
+		}
+
+		/**
+		 * Builds the card and its printings.
+		 *
+		 * @throws NullPointerException
+		 *             if the name is missing
+		 * @throws IllegalArgumentException
+		 *             if the card has no types, or only one of power and
+		 *             toughness
+		 */
+		public SimpleCard build() {
+			return new SimpleCard(this);
+		}
+	}
+
+}
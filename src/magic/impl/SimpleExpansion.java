@@ -0,0 +1,154 @@
+package magic.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Simple immutable implementation of {@link magic.Expansion}.
+ */
+public final class SimpleExpansion extends AbstractExpansion {
+
+	private final String name;
+	private final String code;
+	private final LocalDate releaseDate;
+	private final Release type;
+	private final @Nullable String blockName;
+	private final BorderColor borderColor;
+	private final boolean hasCollectorNumbers;
+	private final boolean isPhysical;
+	private final boolean hasBooster;
+
+	private SimpleExpansion(Builder builder) {
+		this.name = checkNotNull(builder.name, "name");
+		this.code = checkNotNull(builder.code, "code");
+		this.releaseDate = checkNotNull(builder.releaseDate, "releaseDate");
+		this.type = checkNotNull(builder.type, "type");
+		this.blockName = builder.blockName;
+		this.borderColor = checkNotNull(builder.borderColor, "borderColor");
+		this.hasCollectorNumbers = builder.hasCollectorNumbers;
+		this.isPhysical = builder.isPhysical;
+		this.hasBooster = builder.hasBooster;
+	}
+
+	/**
+	 * Returns a new {@link Builder}. Expansions are physical and black-bordered
+	 * unless specified otherwise.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override public String name() {
+		return name;
+	}
+
+	@Override public String code() {
+		return code;
+	}
+
+	@Override public LocalDate releaseDate() {
+		return releaseDate;
+	}
+
+	@Override public Release type() {
+		return type;
+	}
+
+	@Override public @Nullable String blockName() {
+		return blockName;
+	}
+
+	@Override public BorderColor borderColor() {
+		return borderColor;
+	}
+
+	@Override public boolean hasCollectorNumbers() {
+		return hasCollectorNumbers;
+	}
+
+	@Override public boolean isPhysical() {
+		return isPhysical;
+	}
+
+	@Override public boolean hasBooster() {
+		return hasBooster;
+	}
+
+	/**
+	 * A builder for {@link SimpleExpansion}.
+	 */
+	public static final class Builder {
+
+		private String name;
+		private String code;
+		private LocalDate releaseDate;
+		private Release type;
+		private String blockName;
+		private BorderColor borderColor = BorderColor.BLACK;
+		private boolean hasCollectorNumbers;
+		private boolean isPhysical = true;
+		private boolean hasBooster;
+
+		private Builder() {}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder code(String code) {
+			this.code = code;
+			return this;
+		}
+
+		public Builder releaseDate(LocalDate releaseDate) {
+			this.releaseDate = releaseDate;
+			return this;
+		}
+
+		public Builder type(Release type) {
+			this.type = type;
+			return this;
+		}
+
+		public Builder blockName(@Nullable String blockName) {
+			this.blockName = blockName;
+			return this;
+		}
+
+		public Builder borderColor(BorderColor borderColor) {
+			this.borderColor = borderColor;
+			return this;
+		}
+
+		public Builder hasCollectorNumbers(boolean hasCollectorNumbers) {
+			this.hasCollectorNumbers = hasCollectorNumbers;
+			return this;
+		}
+
+		public Builder isPhysical(boolean isPhysical) {
+			this.isPhysical = isPhysical;
+			return this;
+		}
+
+		public Builder hasBooster(boolean hasBooster) {
+			this.hasBooster = hasBooster;
+			return this;
+		}
+
+		/**
+		 * Builds the expansion.
+		 * 
+		 * @throws NullPointerException
+		 *             if the name, code, release date, type or border color
+		 *             is missing
+		 */
+		public SimpleExpansion build() {
+			return new SimpleExpansion(this);
+		}
+	}
+
+}
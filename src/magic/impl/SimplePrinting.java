@@ -0,0 +1,153 @@
+package magic.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.CollectorNumber;
+import magic.Expansion;
+import magic.Rarity;
+
+/**
+ * Simple immutable implementation of {@link magic.Printing}. Printings are
+ * created along with their card by {@link SimpleCard.Builder}.
+ */
+public final class SimplePrinting extends AbstractPrinting {
+
+	private final Card card;
+	private final Expansion expansion;
+	private final Rarity rarity;
+	private final String flavorText;
+	private final String artist;
+	private final @Nullable CollectorNumber collectorNumber;
+	private final int variationIndex;
+	private final boolean starterOnly;
+	private final @Nullable String watermark;
+	private final boolean isTimeshifted;
+
+	SimplePrinting(Card card, Builder builder, int variationIndex) {
+		this.card = card;
+		this.expansion = builder.expansion;
+		this.rarity = builder.rarity;
+		this.flavorText = builder.flavorText;
+		this.artist = builder.artist;
+		this.collectorNumber = builder.collectorNumber;
+		this.variationIndex = variationIndex;
+		this.starterOnly = builder.starterOnly;
+		this.watermark = builder.watermark;
+		this.isTimeshifted = builder.isTimeshifted;
+	}
+
+	/**
+	 * Returns a new {@link Builder} for a printing in the given expansion at
+	 * the given rarity.
+	 */
+	public static Builder builder(Expansion expansion, Rarity rarity) {
+		return new Builder(expansion, rarity);
+	}
+
+	@Override public Card card() {
+		return card;
+	}
+
+	@Override public Expansion expansion() {
+		return expansion;
+	}
+
+	@Override public Rarity rarity() {
+		return rarity;
+	}
+
+	@Override public String flavorText() {
+		return flavorText;
+	}
+
+	@Override public String artist() {
+		return artist;
+	}
+
+	@Override public @Nullable CollectorNumber collectorNumber() {
+		return collectorNumber;
+	}
+
+	@Override public int variationIndex() {
+		return variationIndex;
+	}
+
+	/**
+	 * Returns whether this printing was specified as starter-only, or has a
+	 * starter collector number.
+	 */
+	@Override public boolean starterOnly() {
+		return starterOnly || super.starterOnly();
+	}
+
+	@Override public @Nullable String watermark() {
+		return watermark;
+	}
+
+	@Override public boolean isTimeshifted() {
+		return isTimeshifted;
+	}
+
+	/**
+	 * The printing-specific attributes of a {@link SimplePrinting}. The
+	 * variation index is assigned by {@link SimpleCard.Builder}.
+	 */
+	public static final class Builder {
+
+		private final Expansion expansion;
+		private final Rarity rarity;
+		private String flavorText = "";
+		private String artist = "";
+		private CollectorNumber collectorNumber;
+		private boolean starterOnly;
+		private String watermark;
+		private boolean isTimeshifted;
+
+		private Builder(Expansion expansion, Rarity rarity) {
+			this.expansion = checkNotNull(expansion);
+			this.rarity = checkNotNull(rarity);
+		}
+
+		Expansion expansion() {
+			return expansion;
+		}
+
+		@Nullable CollectorNumber collectorNumber() {
+			return collectorNumber;
+		}
+
+		public Builder flavorText(String flavorText) {
+			this.flavorText = checkNotNull(flavorText);
+			return this;
+		}
+
+		public Builder artist(String artist) {
+			this.artist = checkNotNull(artist);
+			return this;
+		}
+
+		public Builder collectorNumber(@Nullable CollectorNumber collectorNumber) {
+			this.collectorNumber = collectorNumber;
+			return this;
+		}
+
+		public Builder starterOnly(boolean starterOnly) {
+			this.starterOnly = starterOnly;
+			return this;
+		}
+
+		public Builder watermark(@Nullable String watermark) {
+			this.watermark = watermark;
+			return this;
+		}
+
+		public Builder isTimeshifted(boolean isTimeshifted) {
+			this.isTimeshifted = isTimeshifted;
+			return this;
+		}
+	}
+
+}
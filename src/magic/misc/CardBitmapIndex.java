@@ -0,0 +1,324 @@
+package magic.misc;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import magic.Card;
+import magic.Color;
+import magic.Expansion;
+import magic.Printing;
+import magic.Rarity;
+import magic.Supertype;
+import magic.Type;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * A bitmap index over the enum-valued attributes of a collection of cards.
+ * For each color, color identity color, type, supertype, rarity and expansion,
+ * the index keeps the set of ordinals (positions in {@link #cards()}) of the
+ * cards that have that value. {@link Query Queries} combine those sets with
+ * AND, OR and NOT, so a conjunction of several conditions costs a few word
+ * operations per 64 cards instead of a chain of {@link Predicate}s applied to
+ * every card.
+ * <p>
+ * A card has a rarity, or is in an expansion, if any of its printings is.
+ * <p>
+ * The sets are plain {@link BitSet}s: at the size of the whole card pool each
+ * one is only a few kilobytes, and word-aligned sets keep every operation a
+ * simple loop.
+ */
+public final class CardBitmapIndex {
+
+	private final ImmutableList<Card> cards;
+	private final Query all;
+	private final Query none;
+	private final Map<Color, Query> colors;
+	private final Map<Color, Query> identity;
+	private final Map<Type, Query> types;
+	private final Map<Supertype, Query> supertypes;
+	private final Map<Rarity, Query> rarities;
+	private final ImmutableMap<Expansion, Query> expansions;
+	private final Supplier<Map<Card, Integer>> ordinals =
+			Suppliers.memoize(new Supplier<Map<Card, Integer>>() {
+				@Override public Map<Card, Integer> get() {
+					Map<Card, Integer> result = new IdentityHashMap<>(cards.size());
+					for (int i = 0; i < cards.size(); i++) {
+						result.put(cards.get(i), i);
+					}
+					return result;
+				}
+			});
+
+	private CardBitmapIndex(ImmutableList<Card> cards) {
+		this.cards = cards;
+		int size = cards.size();
+		BitSet[] colorBits = bitSets(Color.values().length);
+		BitSet[] identityBits = bitSets(Color.values().length);
+		BitSet[] typeBits = bitSets(Type.values().length);
+		BitSet[] supertypeBits = bitSets(Supertype.values().length);
+		BitSet[] rarityBits = bitSets(Rarity.values().length);
+		Map<Expansion, BitSet> expansionBits = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			Card card = cards.get(i);
+			for (Color color : card.colors()) {
+				colorBits[color.ordinal()].set(i);
+			}
+			for (Color color : card.colorIdentity()) {
+				identityBits[color.ordinal()].set(i);
+			}
+			for (Type type : card.types()) {
+				typeBits[type.ordinal()].set(i);
+			}
+			for (Supertype supertype : card.supertypes()) {
+				supertypeBits[supertype.ordinal()].set(i);
+			}
+			for (Printing printing : card.printings().values()) {
+				rarityBits[printing.rarity().ordinal()].set(i);
+				BitSet inExpansion = expansionBits.get(printing.expansion());
+				if (inExpansion == null) {
+					inExpansion = new BitSet(size);
+					expansionBits.put(printing.expansion(), inExpansion);
+				}
+				inExpansion.set(i);
+			}
+		}
+		BitSet allBits = new BitSet(size);
+		allBits.set(0, size);
+		this.all = new Query(allBits);
+		this.none = new Query(new BitSet());
+		this.colors = queries(Color.class, colorBits);
+		this.identity = queries(Color.class, identityBits);
+		this.types = queries(Type.class, typeBits);
+		this.supertypes = queries(Supertype.class, supertypeBits);
+		this.rarities = queries(Rarity.class, rarityBits);
+		ImmutableMap.Builder<Expansion, Query> builder = ImmutableMap.builder();
+		for (Map.Entry<Expansion, BitSet> entry : expansionBits.entrySet()) {
+			builder.put(entry.getKey(), new Query(entry.getValue()));
+		}
+		this.expansions = builder.build();
+	}
+
+	/**
+	 * Returns an index of all cards in the given database.
+	 */
+	public static CardBitmapIndex of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns an index of the given cards, which keep their iteration order as
+	 * ordinals.
+	 */
+	public static CardBitmapIndex of(Collection<? extends Card> cards) {
+		return new CardBitmapIndex(ImmutableList.<Card> copyOf(cards));
+	}
+
+	private static BitSet[] bitSets(int count) {
+		BitSet[] result = new BitSet[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new BitSet();
+		}
+		return result;
+	}
+
+	private <E extends Enum<E>> Map<E, Query> queries(Class<E> type, BitSet[] bits) {
+		EnumMap<E, Query> result = new EnumMap<>(type);
+		for (E value : type.getEnumConstants()) {
+			result.put(value, new Query(bits[value.ordinal()]));
+		}
+		return Maps.immutableEnumMap(result);
+	}
+
+	/**
+	 * All indexed cards, in ordinal order.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Matches every card.
+	 */
+	public Query all() {
+		return all;
+	}
+
+	/**
+	 * Matches no cards.
+	 */
+	public Query none() {
+		return none;
+	}
+
+	/**
+	 * Matches cards that are the given color.
+	 */
+	public Query color(Color color) {
+		return colors.get(color);
+	}
+
+	/**
+	 * Matches colorless cards.
+	 */
+	public Query colorless() {
+		Query colored = none;
+		for (Query query : colors.values()) {
+			colored = colored.or(query);
+		}
+		return colored.not();
+	}
+
+	/**
+	 * Matches cards whose color identity includes the given color.
+	 */
+	public Query identity(Color color) {
+		return identity.get(color);
+	}
+
+	/**
+	 * Matches cards that have the given type.
+	 */
+	public Query type(Type type) {
+		return types.get(type);
+	}
+
+	/**
+	 * Matches cards that have the given supertype.
+	 */
+	public Query supertype(Supertype supertype) {
+		return supertypes.get(supertype);
+	}
+
+	/**
+	 * Matches cards with at least one printing of the given rarity.
+	 */
+	public Query rarity(Rarity rarity) {
+		return rarities.get(rarity);
+	}
+
+	/**
+	 * Matches cards printed in the given expansion.
+	 */
+	public Query expansion(Expansion expansion) {
+		Query query = expansions.get(expansion);
+		return query != null ? query : none;
+	}
+
+	/**
+	 * An immutable set of matching cards. Combining queries creates new
+	 * queries and leaves the operands unchanged.
+	 */
+	public final class Query {
+
+		private final BitSet bits;
+
+		private Query(BitSet bits) {
+			this.bits = bits;
+		}
+
+		/**
+		 * Matches cards that match both this query and the other.
+		 */
+		public Query and(Query other) {
+			BitSet result = (BitSet) bits.clone();
+			result.and(other.bits);
+			return new Query(result);
+		}
+
+		/**
+		 * Matches cards that match either this query or the other.
+		 */
+		public Query or(Query other) {
+			BitSet result = (BitSet) bits.clone();
+			result.or(other.bits);
+			return new Query(result);
+		}
+
+		/**
+		 * Matches cards that match this query but not the other.
+		 */
+		public Query andNot(Query other) {
+			BitSet result = (BitSet) bits.clone();
+			result.andNot(other.bits);
+			return new Query(result);
+		}
+
+		/**
+		 * Matches cards that don't match this query.
+		 */
+		public Query not() {
+			return all.andNot(this);
+		}
+
+		/**
+		 * Returns the number of matching cards.
+		 */
+		public int count() {
+			return bits.cardinality();
+		}
+
+		/**
+		 * Returns whether the given card is indexed and matches this query.
+		 */
+		public boolean matches(Card card) {
+			Integer ordinal = ordinals.get().get(card);
+			return ordinal != null && bits.get(ordinal);
+		}
+
+		/**
+		 * Returns a copy of the ordinals of the matching cards.
+		 */
+		public BitSet ordinals() {
+			return (BitSet) bits.clone();
+		}
+
+		/**
+		 * Returns a view of the matching cards in ordinal order. Cards are
+		 * looked up as the view is iterated.
+		 */
+		public FluentIterable<Card> cards() {
+			return new FluentIterable<Card>() {
+				@Override public Iterator<Card> iterator() {
+					return new AbstractIterator<Card>() {
+						private int next = bits.nextSetBit(0);
+
+						@Override protected Card computeNext() {
+							if (next < 0) {
+								return endOfData();
+							}
+							Card card = cards.get(next);
+							next = bits.nextSetBit(next + 1);
+							return card;
+						}
+					};
+				}
+			};
+		}
+
+		/**
+		 * Returns a {@link Predicate} that applies {@link #matches(Card)}, for
+		 * use where a {@code Predicate<Card>} is expected.
+		 */
+		public Predicate<Card> asPredicate() {
+			return new Predicate<Card>() {
+				@Override public boolean apply(Card input) {
+					return matches(input);
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,441 @@
+package magic.misc;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import magic.Card;
+import magic.Color;
+import magic.Expression;
+import magic.Supertype;
+import magic.Type;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A columnar projection of a collection of cards. Each attribute is stored in
+ * its own primitive array, indexed by the card's ordinal (its position in
+ * {@link #cards()}), so filters over the whole collection can scan those
+ * arrays without touching the {@link Card} objects.
+ * <p>
+ * Sets of {@link Color}s, {@link Type}s and {@link Supertype}s are stored as
+ * bit masks, where bit {@code n} stands for the value with ordinal {@code n}.
+ * Power, toughness and loyalty are stored only when they are constant; all
+ * other cards have {@link #ABSENT} in those columns. Power and toughness are
+ * also stored in the compiled form of {@link Expression#evaluate(int)}, so
+ * that {@link #powers(int)} and {@link #toughnesses(int)} can evaluate them for
+ * every card at once.
+ */
+public final class CardColumns {
+
+	/**
+	 * The value stored for power, toughness or loyalty when the card has no
+	 * such value, or when the value is not constant.
+	 */
+	public static final int ABSENT = Integer.MIN_VALUE;
+
+	private final ImmutableList<Card> cards;
+	private final int[] converted;
+	private final byte[] colors;
+	private final byte[] colorIdentity;
+	private final short[] types;
+	private final byte[] supertypes;
+	private final int[] power;
+	private final int[] toughness;
+	private final int[] loyalty;
+	// evaluable power and toughness as coefficient * star + offset
+	private final int[] powerCoefficient;
+	private final int[] powerOffset;
+	private final int[] toughnessCoefficient;
+	private final int[] toughnessOffset;
+
+	private CardColumns(ImmutableList<Card> cards) {
+		int size = cards.size();
+		this.cards = cards;
+		this.converted = new int[size];
+		this.colors = new byte[size];
+		this.colorIdentity = new byte[size];
+		this.types = new short[size];
+		this.supertypes = new byte[size];
+		this.power = new int[size];
+		this.toughness = new int[size];
+		this.loyalty = new int[size];
+		this.powerCoefficient = new int[size];
+		this.powerOffset = new int[size];
+		this.toughnessCoefficient = new int[size];
+		this.toughnessOffset = new int[size];
+		for (int i = 0; i < size; i++) {
+			Card card = cards.get(i);
+			converted[i] = card.manaCost().converted();
+			colors[i] = (byte) mask(card.colors());
+			colorIdentity[i] = (byte) mask(card.colorIdentity());
+			types[i] = (short) mask(card.types());
+			supertypes[i] = (byte) mask(card.supertypes());
+			power[i] = constant(card.power());
+			toughness[i] = constant(card.toughness());
+			loyalty[i] = card.loyalty() != null ? card.loyalty() : ABSENT;
+			compile(card.power(), powerCoefficient, powerOffset, i);
+			compile(card.toughness(), toughnessCoefficient, toughnessOffset, i);
+		}
+	}
+
+	/*
+	 * Stores the expression as coefficient * star + offset, or as the
+	 * constant ABSENT if it cannot be evaluated.
+	 */
+	private static void compile(Expression expression, int[] coefficient,
+			int[] offset, int i) {
+		if (expression != null && expression.isEvaluable()) {
+			offset[i] = expression.evaluate(0);
+			coefficient[i] = expression.evaluate(1) - offset[i];
+		} else {
+			offset[i] = ABSENT;
+		}
+	}
+
+	/**
+	 * Returns the columns of all cards in the given database.
+	 */
+	public static CardColumns of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns the columns of the given cards, which keep their iteration order
+	 * as ordinals.
+	 */
+	public static CardColumns of(Collection<? extends Card> cards) {
+		return new CardColumns(ImmutableList.<Card> copyOf(cards));
+	}
+
+	/**
+	 * Returns a bit mask with the bit for each given value's ordinal set.
+	 */
+	public static int mask(Iterable<? extends Enum<?>> values) {
+		int mask = 0;
+		for (Enum<?> value : values) {
+			mask |= 1 << value.ordinal();
+		}
+		return mask;
+	}
+
+	private static int constant(Expression expression) {
+		return expression != null && expression.isConstant()
+				? expression.value()
+				: ABSENT;
+	}
+
+	/**
+	 * The number of cards.
+	 */
+	public int size() {
+		return cards.size();
+	}
+
+	/**
+	 * All cards, in ordinal order.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	public Card card(int ordinal) {
+		return cards.get(ordinal);
+	}
+
+	public int converted(int ordinal) {
+		return converted[ordinal];
+	}
+
+	public int colors(int ordinal) {
+		return colors[ordinal];
+	}
+
+	public int colorIdentity(int ordinal) {
+		return colorIdentity[ordinal];
+	}
+
+	public int types(int ordinal) {
+		return types[ordinal];
+	}
+
+	public int supertypes(int ordinal) {
+		return supertypes[ordinal];
+	}
+
+	public int power(int ordinal) {
+		return power[ordinal];
+	}
+
+	public int toughness(int ordinal) {
+		return toughness[ordinal];
+	}
+
+	public int loyalty(int ordinal) {
+		return loyalty[ordinal];
+	}
+
+	/**
+	 * Returns the power of a card when {@code *} has the given value, or
+	 * {@link #ABSENT} if the card has no power or its power cannot be
+	 * {@linkplain Expression#evaluate(int) evaluated}.
+	 */
+	public int power(int ordinal, int star) {
+		return powerCoefficient[ordinal] * star + powerOffset[ordinal];
+	}
+
+	/**
+	 * Returns the toughness of a card when {@code *} has the given value, or
+	 * {@link #ABSENT} if the card has no toughness or its toughness cannot be
+	 * {@linkplain Expression#evaluate(int) evaluated}.
+	 */
+	public int toughness(int ordinal, int star) {
+		return toughnessCoefficient[ordinal] * star + toughnessOffset[ordinal];
+	}
+
+	/**
+	 * Returns the power of every card when {@code *} has the given value,
+	 * indexed by ordinal, as by {@link #power(int, int)}.
+	 */
+	public int[] powers(int star) {
+		return evaluate(powerCoefficient, powerOffset, star);
+	}
+
+	/**
+	 * Returns the toughness of every card when {@code *} has the given value,
+	 * indexed by ordinal, as by {@link #toughness(int, int)}.
+	 */
+	public int[] toughnesses(int star) {
+		return evaluate(toughnessCoefficient, toughnessOffset, star);
+	}
+
+	private static int[] evaluate(int[] coefficient, int[] offset, int star) {
+		int[] result = new int[offset.length];
+		for (int i = 0; i < result.length; i++) {
+			// cards that cannot be evaluated have a coefficient of zero
+			result[i] = coefficient[i] * star + offset[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new {@link Filter} that matches every card.
+	 */
+	public Filter filter() {
+		return new Filter();
+	}
+
+	/**
+	 * A conjunction of conditions on the columns. Each method narrows the
+	 * filter and returns it, so conditions can be chained:
+	 * 
+	 * <pre>
+	 * columns.filter()
+	 * 		.typesInclude(EnumSet.of(Type.CREATURE))
+	 * 		.colorsWithin(Color.parseSet("WU"))
+	 * 		.convertedBetween(0, 2)
+	 * 		.cards();
+	 * </pre>
+	 * <p>
+	 * The power, toughness and loyalty conditions only match cards whose value
+	 * is constant.
+	 */
+	public final class Filter {
+
+		private static final int ALL_COLORS = (1 << 5) - 1;
+
+		private int minConverted = Integer.MIN_VALUE;
+		private int maxConverted = Integer.MAX_VALUE;
+		private int colorsIncluded = 0;
+		private int colorsAllowed = ALL_COLORS;
+		private int identityAllowed = ALL_COLORS;
+		private int typesIncluded = 0;
+		private int typesExcluded = 0;
+		private int typesAnyOf = -1;
+		private int supertypesIncluded = 0;
+		private int supertypesExcluded = 0;
+		private int minPower = Integer.MIN_VALUE;
+		private int maxPower = Integer.MAX_VALUE;
+		private int minToughness = Integer.MIN_VALUE;
+		private int maxToughness = Integer.MAX_VALUE;
+		private int minLoyalty = Integer.MIN_VALUE;
+		private int maxLoyalty = Integer.MAX_VALUE;
+
+		private Filter() {}
+
+		/**
+		 * Matches cards whose converted mana cost is between {@code min} and
+		 * {@code max}, inclusive.
+		 */
+		public Filter convertedBetween(int min, int max) {
+			minConverted = Math.max(minConverted, min);
+			maxConverted = Math.min(maxConverted, max);
+			return this;
+		}
+
+		/**
+		 * Matches cards that are all of the given colors.
+		 */
+		public Filter colorsInclude(Iterable<Color> colors) {
+			colorsIncluded |= mask(colors);
+			return this;
+		}
+
+		/**
+		 * Matches cards that are none of the colors other than the given ones.
+		 */
+		public Filter colorsWithin(Iterable<Color> colors) {
+			colorsAllowed &= mask(colors);
+			return this;
+		}
+
+		/**
+		 * Matches cards whose colors are exactly the given colors.
+		 */
+		public Filter colorsExactly(Iterable<Color> colors) {
+			return colorsInclude(colors).colorsWithin(colors);
+		}
+
+		/**
+		 * Matches cards whose color identity is a subset of the given colors.
+		 */
+		public Filter identityWithin(Iterable<Color> colors) {
+			identityAllowed &= mask(colors);
+			return this;
+		}
+
+		/**
+		 * Matches cards that have all of the given types.
+		 */
+		public Filter typesInclude(Iterable<Type> types) {
+			typesIncluded |= mask(types);
+			return this;
+		}
+
+		/**
+		 * Matches cards that have at least one of the given types. This
+		 * condition can only be given once per filter.
+		 */
+		public Filter typesIncludeAnyOf(Iterable<Type> types) {
+			checkState(typesAnyOf == -1, "typesIncludeAnyOf already given");
+			typesAnyOf = mask(types);
+			return this;
+		}
+
+		/**
+		 * Matches cards that have none of the given types.
+		 */
+		public Filter typesExclude(Iterable<Type> types) {
+			typesExcluded |= mask(types);
+			return this;
+		}
+
+		/**
+		 * Matches cards that have all of the given supertypes.
+		 */
+		public Filter supertypesInclude(Iterable<Supertype> supertypes) {
+			supertypesIncluded |= mask(supertypes);
+			return this;
+		}
+
+		/**
+		 * Matches cards that have none of the given supertypes.
+		 */
+		public Filter supertypesExclude(Iterable<Supertype> supertypes) {
+			supertypesExcluded |= mask(supertypes);
+			return this;
+		}
+
+		/**
+		 * Matches cards with a constant power between {@code min} and
+		 * {@code max}, inclusive.
+		 */
+		public Filter powerBetween(int min, int max) {
+			minPower = Math.max(minPower, Math.max(min, ABSENT + 1));
+			maxPower = Math.min(maxPower, max);
+			return this;
+		}
+
+		/**
+		 * Matches cards with a constant toughness between {@code min} and
+		 * {@code max}, inclusive.
+		 */
+		public Filter toughnessBetween(int min, int max) {
+			minToughness = Math.max(minToughness, Math.max(min, ABSENT + 1));
+			maxToughness = Math.min(maxToughness, max);
+			return this;
+		}
+
+		/**
+		 * Matches cards with a starting loyalty between {@code min} and
+		 * {@code max}, inclusive.
+		 */
+		public Filter loyaltyBetween(int min, int max) {
+			minLoyalty = Math.max(minLoyalty, Math.max(min, ABSENT + 1));
+			maxLoyalty = Math.min(maxLoyalty, max);
+			return this;
+		}
+
+		/**
+		 * Returns the ordinals of all matching cards.
+		 */
+		public BitSet scan() {
+			BitSet result = new BitSet(cards.size());
+			for (int i = 0; i < converted.length; i++) {
+				if (matches(i)) {
+					result.set(i);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the number of matching cards.
+		 */
+		public int count() {
+			int count = 0;
+			for (int i = 0; i < converted.length; i++) {
+				if (matches(i)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Returns all matching cards, in ordinal order.
+		 */
+		public ImmutableList<Card> cards() {
+			ImmutableList.Builder<Card> builder = ImmutableList.builder();
+			for (int i = 0; i < converted.length; i++) {
+				if (matches(i)) {
+					builder.add(cards.get(i));
+				}
+			}
+			return builder.build();
+		}
+
+		private boolean matches(int i) {
+			int c = converted[i];
+			int p = power[i];
+			int t = toughness[i];
+			int l = loyalty[i];
+			int type = types[i];
+			int supertype = supertypes[i];
+			return minConverted <= c & c <= maxConverted
+					& (colors[i] & colorsIncluded) == colorsIncluded
+					& (colors[i] & ~colorsAllowed) == 0
+					& (colorIdentity[i] & ~identityAllowed) == 0
+					& (type & typesIncluded) == typesIncluded
+					& (type & typesExcluded) == 0
+					& (typesAnyOf == -1 | (type & typesAnyOf) != 0)
+					& (supertype & supertypesIncluded) == supertypesIncluded
+					& (supertype & supertypesExcluded) == 0
+					& minPower <= p & p <= maxPower
+					& minToughness <= t & t <= maxToughness
+					& minLoyalty <= l & l <= maxLoyalty;
+		}
+	}
+
+}
@@ -0,0 +1,376 @@
+package magic.misc;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import magic.Card;
+import magic.Color;
+import magic.ManaCost;
+import magic.Printing;
+import magic.Supertype;
+import magic.Type;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Writes cards and printings as UTF-8 text straight into a
+ * {@link WritableByteChannel} or {@link OutputStream}, in the same format as
+ * {@link Card#writeTo(Appendable)} and {@link Printing#writeTo(Appendable)}:
+ * the bytes written are the same as the UTF-8 encoding of what the
+ * implementations in {@link magic.impl} append.
+ * <p>
+ * Text is encoded into a direct buffer, which is written out whenever it fills
+ * up. The parts of a card that repeat across the catalogue, namely mana costs,
+ * supertypes and types, and color indicators, are encoded once and kept in
+ * caches shared by all renderers, so most of the work for a typical card is
+ * copying bytes.
+ * <p>
+ * A renderer is not thread-safe. Nothing is written to the underlying channel
+ * until the buffer fills up or {@link #flush()} or {@link #close()} is called.
+ */
+public final class CardRenderer implements Flushable, Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final byte[] EOL = encode(System.lineSeparator());
+	private static final byte[] TYPE_SEPARATOR = encode(" - ");
+	private static final byte[] TIMESHIFTED = encode("(Timeshifted)");
+	private static final byte[] ILLUSTRATOR = encode("Illus. ");
+
+	// weak keys compare by identity, which suits canonical mana costs, and
+	// do not keep costs alive after they are evicted from their own cache
+	private static final ConcurrentMap<ManaCost, byte[]> MANA_COSTS =
+			new MapMaker().weakKeys().makeMap();
+	// indexed by supertype mask, then type mask
+	private static final ConcurrentMap<Long, byte[]> TYPE_LINES =
+			new ConcurrentHashMap<>();
+	// indexed by color mask
+	private static final byte[][] COLOR_INDICATORS = colorIndicators();
+
+	private final WritableByteChannel out;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	private CardRenderer(WritableByteChannel out) {
+		this.out = out;
+	}
+
+	/**
+	 * Returns a renderer that writes to the given channel.
+	 */
+	public static CardRenderer to(WritableByteChannel out) {
+		return new CardRenderer(out);
+	}
+
+	/**
+	 * Returns a renderer that writes to the given stream.
+	 */
+	public static CardRenderer to(OutputStream out) {
+		return new CardRenderer(Channels.newChannel(out));
+	}
+
+	/**
+	 * Writes each of the given cards, as by {@link Card#writeTo(Appendable)}.
+	 */
+	public void writeCards(Iterable<? extends Card> cards) throws IOException {
+		for (Card card : cards) {
+			write(card);
+		}
+	}
+
+	/**
+	 * Writes each of the given printings, as by
+	 * {@link Printing#writeTo(Appendable)}.
+	 */
+	public void writePrintings(Iterable<? extends Printing> printings)
+			throws IOException {
+		for (Printing printing : printings) {
+			write(printing);
+		}
+	}
+
+	/**
+	 * Writes a card, as by {@link Card#writeTo(Appendable)}.
+	 */
+	public void write(Card card) throws IOException {
+		writeHeader(card);
+		put(EOL);
+		writeText(card);
+		writeStats(card);
+	}
+
+	/**
+	 * Writes a printing, as by {@link Printing#writeTo(Appendable)}.
+	 */
+	public void write(Printing printing) throws IOException {
+		Card card = printing.card();
+		writeHeader(card);
+		put(" (");
+		put(printing.expansion().code());
+		put(':');
+		put(printing.rarity().code());
+		put(')');
+		put(EOL);
+		writeText(card);
+		if (!printing.flavorText().isEmpty()) {
+			put('/');
+			put(printing.flavorText());
+			put('/');
+			put(EOL);
+		}
+		if (printing.watermark() != null) {
+			put('[');
+			put(printing.watermark());
+			put(']');
+			put(EOL);
+		}
+		if (printing.isTimeshifted()) {
+			put(TIMESHIFTED);
+			put(EOL);
+		}
+		writeStats(card);
+		if (printing.collectorNumber() != null) {
+			put('#');
+			put(printing.collectorNumber().toString());
+			put(' ');
+		}
+		put(ILLUSTRATOR);
+		put(printing.artist());
+		put(EOL);
+	}
+
+	/**
+	 * Writes everything in the buffer to the underlying channel.
+	 */
+	@Override public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Flushes this renderer and closes the underlying channel.
+	 */
+	@Override public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * The name, mana cost and link on the first line, and the type line up to
+	 * but not including anything a printing adds to it.
+	 */
+	private void writeHeader(Card card) throws IOException {
+		put(card.name());
+		ManaCost manaCost = card.manaCost();
+		if (!manaCost.isEmpty()) {
+			put(' ');
+			put(manaCost(manaCost));
+		}
+		if (card.link() != null) {
+			put(" [");
+			put(card.link().toString());
+			put(']');
+		}
+		put(EOL);
+		Set<Color> indicator = card.colorIndicator();
+		if (!indicator.isEmpty()) {
+			int mask = orderedMask(indicator);
+			if (mask != -1) {
+				put(COLOR_INDICATORS[mask]);
+			} else {
+				put(colorIndicator(indicator));
+			}
+		}
+		Set<Supertype> supertypes = card.supertypes();
+		Set<Type> types = card.types();
+		int supertypeMask = orderedMask(supertypes);
+		int typeMask = orderedMask(types);
+		if (supertypeMask != -1 && typeMask != -1) {
+			put(typeLine(supertypeMask, typeMask, supertypes, types));
+		} else {
+			put(typeLine(supertypes, types));
+		}
+		if (!card.subtypes().isEmpty()) {
+			put(TYPE_SEPARATOR);
+			boolean first = true;
+			for (String subtype : card.subtypes()) {
+				if (!first) {
+					put(' ');
+				}
+				put(subtype);
+				first = false;
+			}
+		}
+	}
+
+	private void writeText(Card card) throws IOException {
+		if (!card.text().isEmpty()) {
+			put(card.text());
+			put(EOL);
+		}
+	}
+
+	private void writeStats(Card card) throws IOException {
+		if (card.power() != null) {
+			put(card.power().toString());
+			put('/');
+			put(card.toughness().toString());
+			put(EOL);
+		} else if (card.loyalty() != null) {
+			put(card.loyalty().toString());
+			put(EOL);
+		}
+	}
+
+	private static byte[] manaCost(ManaCost manaCost) {
+		byte[] result = MANA_COSTS.get(manaCost);
+		if (result == null) {
+			result = encode(manaCost.toString());
+			MANA_COSTS.putIfAbsent(manaCost, result);
+		}
+		return result;
+	}
+
+	private static byte[] typeLine(int supertypeMask, int typeMask,
+			Set<Supertype> supertypes, Set<Type> types) {
+		Long key = (long) supertypeMask << 32 | typeMask;
+		byte[] result = TYPE_LINES.get(key);
+		if (result == null) {
+			result = typeLine(supertypes, types);
+			TYPE_LINES.putIfAbsent(key, result);
+		}
+		return result;
+	}
+
+	private static byte[] typeLine(Set<Supertype> supertypes, Set<Type> types) {
+		StringBuilder builder = new StringBuilder();
+		for (Supertype supertype : supertypes) {
+			builder.append(supertype).append(' ');
+		}
+		for (Type type : types) {
+			builder.append(type).append(' ');
+		}
+		if (!types.isEmpty()) {
+			builder.setLength(builder.length() - 1);
+		}
+		return encode(builder.toString());
+	}
+
+	private static byte[][] colorIndicators() {
+		Color[] colors = Color.values();
+		byte[][] result = new byte[1 << colors.length][];
+		for (int mask = 1; mask < result.length; mask++) {
+			StringBuilder builder = new StringBuilder("(");
+			for (Color color : colors) {
+				if ((mask & 1 << color.ordinal()) != 0) {
+					builder.append(color.code());
+				}
+			}
+			result[mask] = encode(builder.append(") ").toString());
+		}
+		return result;
+	}
+
+	private static byte[] colorIndicator(Set<Color> colors) {
+		StringBuilder builder = new StringBuilder("(");
+		for (Color color : colors) {
+			builder.append(color.code());
+		}
+		return encode(builder.append(") ").toString());
+	}
+
+	/*
+	 * Returns a mask of the ordinals of the given values, or -1 if they are
+	 * not iterated in ordinal order, in which case the mask does not determine
+	 * the output.
+	 */
+	private static int orderedMask(Set<? extends Enum<?>> values) {
+		int mask = 0;
+		int previous = -1;
+		for (Enum<?> value : values) {
+			int ordinal = value.ordinal();
+			if (ordinal <= previous || ordinal >= Integer.SIZE - 1) {
+				return -1;
+			}
+			mask |= 1 << ordinal;
+			previous = ordinal;
+		}
+		return mask;
+	}
+
+	private static byte[] encode(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void put(byte[] bytes) throws IOException {
+		if (buffer.remaining() < bytes.length) {
+			flush();
+			if (bytes.length > buffer.capacity()) {
+				ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+				while (wrapped.hasRemaining()) {
+					out.write(wrapped);
+				}
+				return;
+			}
+		}
+		buffer.put(bytes);
+	}
+
+	private void put(char c) throws IOException {
+		// only called with ASCII
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put((byte) c);
+	}
+
+	/*
+	 * Encodes the string into the buffer, with the same replacement of
+	 * unpaired surrogates as String.getBytes(UTF_8).
+	 */
+	private void put(String s) throws IOException {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (buffer.remaining() < 4) {
+				flush();
+			}
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | c >> 6));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(s.charAt(i + 1))) {
+					int code = Character.toCodePoint(c, s.charAt(++i));
+					buffer.put((byte) (0xF0 | code >> 18));
+					buffer.put((byte) (0x80 | code >> 12 & 0x3F));
+					buffer.put((byte) (0x80 | code >> 6 & 0x3F));
+					buffer.put((byte) (0x80 | code & 0x3F));
+				} else {
+					buffer.put((byte) '?');
+				}
+			} else {
+				buffer.put((byte) (0xE0 | c >> 12));
+				buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+
+}
@@ -1,12 +1,25 @@
 package magic.misc;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import magic.Card;
 import magic.Expansion;
 import magic.Link;
@@ -18,6 +31,7 @@ import magic.Symbol.Group;
 import magic.Type;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -153,6 +167,151 @@ public final class Cards {
 		}
 	};
 
+	/*
+	 * Inputs smaller than this are sorted on a single thread even when a pool
+	 * is given, and ranges smaller than this are not split further.
+	 */
+	private static final int SEQUENTIAL_SORT = 1 << 13;
+	private static final int BASIC_LAND_BITS = 3;
+
+	/**
+	 * Returns the given cards in the order of {@link #REGULAR_ORDERING}, with
+	 * cards that it considers equal in their original order.
+	 * <p>
+	 * Rather than comparing cards, this computes a sort key for each distinct
+	 * card once: its section, its color or basic land type, and the rank of
+	 * its name among all distinct names. Each key is packed into a
+	 * {@code long} together with the card's position, and the {@code long}s
+	 * are sorted.
+	 */
+	public static <C extends Card> ImmutableList<C> regularSortedCopy(
+			Iterable<? extends C> cards) {
+		return sortRegular(cards, null);
+	}
+
+	/**
+	 * Same as {@link #regularSortedCopy(Iterable)}, sorting the keys of large
+	 * inputs in parallel on the given pool.
+	 */
+	public static <C extends Card> ImmutableList<C> regularSortedCopy(
+			Iterable<? extends C> cards, ForkJoinPool pool) {
+		return sortRegular(cards, checkNotNull(pool));
+	}
+
+	private static <C extends Card> ImmutableList<C> sortRegular(
+			Iterable<? extends C> cards, @Nullable ForkJoinPool pool) {
+		@SuppressWarnings("unchecked")
+		C[] input = (C[]) Iterables.toArray(cards, Card.class);
+		int size = input.length;
+
+		// section and minor key of each distinct card, and the names to rank
+		Map<Card, Integer> sections = new IdentityHashMap<>();
+		Map<String, Integer> names = new HashMap<>();
+		for (Card card : input) {
+			if (!sections.containsKey(card)) {
+				int key = sectionKey(card);
+				sections.put(card, key);
+				if (key >>> BASIC_LAND_BITS != Section.BASIC_LAND.ordinal()) {
+					names.put(card.name(), null);
+				}
+			}
+		}
+		List<String> sortedNames = new ArrayList<>(names.keySet());
+		Collections.sort(sortedNames);
+		for (int i = 0; i < sortedNames.size(); i++) {
+			names.put(sortedNames.get(i), i);
+		}
+
+		int nameBits = bits(sortedNames.size());
+		int indexBits = bits(size);
+		int sectionBits = bits(Section.values().length) + BASIC_LAND_BITS;
+		if (sectionBits + nameBits + indexBits >= Long.SIZE) {
+			return REGULAR_ORDERING.immutableSortedCopy(Arrays.asList(input));
+		}
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			Card card = input[i];
+			long key = sections.get(card);
+			Integer name = names.get(card.name());
+			key = key << nameBits
+					| (key >>> BASIC_LAND_BITS == Section.BASIC_LAND.ordinal() ? 0 : name);
+			keys[i] = key << indexBits | i;
+		}
+		if (pool == null || size < SEQUENTIAL_SORT) {
+			Arrays.sort(keys);
+		} else {
+			pool.invoke(new SortAction(keys, new long[size], 0, size));
+		}
+
+		long indexMask = (1L << indexBits) - 1;
+		ImmutableList.Builder<C> result = ImmutableList.builder();
+		for (long key : keys) {
+			result.add(input[(int) (key & indexMask)]);
+		}
+		return result.build();
+	}
+
+	/*
+	 * The section of the card, followed by its color if it is monocolored or
+	 * its basic land type if it is a basic land; cards whose keys are equal
+	 * are ordered by name, except for basic lands.
+	 */
+	private static int sectionKey(Card card) {
+		Section section = section(card);
+		int minor = 0;
+		if (section == Section.MONOCOLORED) {
+			minor = Iterables.getOnlyElement(card.colors()).ordinal();
+		} else if (section == Section.BASIC_LAND) {
+			String type = Iterables.getOnlyElement(card.subtypes());
+			minor = Subtype.BASIC_LAND_TYPES.keySet().asList().indexOf(type);
+			checkArgument(minor != -1, "not a basic land type: %s", type);
+		}
+		return section.ordinal() << BASIC_LAND_BITS | minor;
+	}
+
+	private static int bits(int count) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(count - 1, 1));
+	}
+
+	/*
+	 * Sorts a range of an array, sorting its halves in parallel and merging
+	 * them through the buffer.
+	 */
+	private static final class SortAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] keys;
+		private final long[] buffer;
+		private final int from;
+		private final int to;
+
+		SortAction(long[] keys, long[] buffer, int from, int to) {
+			this.keys = keys;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override protected void compute() {
+			if (to - from <= SEQUENTIAL_SORT) {
+				Arrays.sort(keys, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SortAction(keys, buffer, from, mid),
+					new SortAction(keys, buffer, mid, to));
+			int left = from;
+			int right = mid;
+			for (int i = from; i < to; i++) {
+				buffer[i] = right == to || left < mid && keys[left] < keys[right]
+						? keys[left++]
+						: keys[right++];
+			}
+			System.arraycopy(buffer, from, keys, from, to - from);
+		}
+	}
+
 	public static String formatPrintings(
 			Multimap<Expansion, ? extends Printing> printings) {
 		StringBuilder builder = new StringBuilder();
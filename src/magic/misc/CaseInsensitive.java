@@ -1,5 +1,7 @@
 package magic.misc;
 
+import java.util.Arrays;
+
 public class CaseInsensitive {
 	
 	public static boolean contains(String source, String target) {
@@ -15,23 +17,88 @@ public class CaseInsensitive {
 	}
 	
 	public static int indexOf(String source, String target, int start) {
-		int limit = source.length() - target.length() + 1;
-		for (int i = start; i < limit; i++) {
-			if (source.regionMatches(true, i, target, 0, target.length())) {
-				return i;
-			}
-		}
-		return -1;
+		return new Finder(target).indexOf(source, start);
 	}
 	
 	public static boolean containsTokens(String source, String terms) {
-		String[] tokens = terms.split(" ");
-		for (String token : tokens) {
-			if (!token.isEmpty() && !contains(source, token)) {
+		int start = 0;
+		while (start <= terms.length()) {
+			int end = terms.indexOf(' ', start);
+			if (end == -1) {
+				end = terms.length();
+			}
+			if (end > start && !contains(source, terms.substring(start, end))) {
 				return false;
 			}
+			start = end + 1;
 		}
 		return true;
 	}
+
+	/**
+	 * Returns the character that the given character is compared as. Two
+	 * characters have the same folded form exactly when
+	 * {@link String#regionMatches(boolean, int, String, int, int)} considers
+	 * them equal, ignoring case.
+	 */
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Searches for a target ignoring case, with the Boyer-Moore-Horspool
+	 * algorithm: when the window does not match, it skips ahead by how far the
+	 * last character of the window is from the end of the target. Shifts are
+	 * kept for the low eight bits of each folded character, which keeps the
+	 * table small; characters that share a slot take the smallest shift.
+	 */
+	static final class Finder {
+
+		private static final int SLOTS = 256;
+
+		private final char[] target;
+		private final int[] shifts = new int[SLOTS];
+
+		Finder(String target) {
+			int length = target.length();
+			this.target = new char[length];
+			for (int i = 0; i < length; i++) {
+				this.target[i] = fold(target.charAt(i));
+			}
+			Arrays.fill(shifts, Math.max(length, 1));
+			for (int i = 0; i < length - 1; i++) {
+				shifts[this.target[i] & (SLOTS - 1)] = length - 1 - i;
+			}
+		}
+
+		/**
+		 * Returns the index of the first occurrence of the target in the
+		 * source at or after the given index, ignoring case, or -1 if there is
+		 * none.
+		 */
+		int indexOf(String source, int start) {
+			int length = target.length;
+			int limit = source.length() - length;
+			int i = Math.max(start, 0);
+			if (length == 0) {
+				return i <= limit ? i : -1;
+			}
+			char last = target[length - 1];
+			while (i <= limit) {
+				char c = fold(source.charAt(i + length - 1));
+				if (c == last) {
+					int j = length - 2;
+					while (j >= 0 && fold(source.charAt(i + j)) == target[j]) {
+						j--;
+					}
+					if (j < 0) {
+						return i;
+					}
+				}
+				i += shifts[c & (SLOTS - 1)];
+			}
+			return -1;
+		}
+	}
 	
 }
@@ -0,0 +1,300 @@
+package magic.misc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import magic.Card;
+import magic.Color;
+import magic.ManaCost;
+import magic.ManaPool;
+import magic.Subtype;
+import magic.Symbol;
+import magic.Symbol.Group;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+
+/**
+ * Answers "which cards could be cast with these lands?" for a whole
+ * collection of cards at once. A mana base is a {@link ManaPool} with one mana
+ * for each land, together with the number of lands that can be tapped, such as
+ * the turn number; a card is castable if its mana cost can be paid with at
+ * most that much of the mana base, taking <code>{X}</code> to be zero.
+ * <p>
+ * The requirements of each card's mana cost are computed once, into primitive
+ * arrays indexed by the card's ordinal (its position in {@link #cards()}).
+ * Most costs consist only of primary symbols, <code>{C}</code> and generic
+ * mana; those are decided by comparing the counts of each type of mana, packed
+ * into a single {@code long}, with the mana base. Only costs with hybrid,
+ * monocolored hybrid or Phyrexian symbols are passed to
+ * {@link ManaPool#minimumMana}.
+ */
+public final class Castability {
+
+	// ordinals per word of a BitSet; parallel scans split on these boundaries
+	private static final int WORD = 64;
+	private static final int SEQUENTIAL_WORDS = 64;
+
+	// six lanes of eight bits: the five colors by ordinal, then {C}
+	private static final int LANES = 6;
+	private static final int MAX_LANE = 0x7F;
+	private static final long HIGH_BITS = 0x808080808080L;
+
+	private static final int SIMPLE = -1;
+
+	// the primary symbol of each color, by ordinal
+	private static final Symbol[] PRIMARY = new Symbol[Color.values().length];
+
+	static {
+		for (Symbol symbol : Symbol.values()) {
+			if (symbol.group() == Group.PRIMARY) {
+				PRIMARY[symbol.colors().iterator().next().ordinal()] = symbol;
+			}
+		}
+	}
+
+	private final ImmutableList<Card> cards;
+	// the mana needed, when the cost is simple
+	private final int[] required;
+	// the pips of each type of mana, when the cost is simple
+	private final long[] pips;
+	// SIMPLE, or an index into costs
+	private final int[] complex;
+	private final ManaCost[] costs;
+
+	private Castability(ImmutableList<Card> cards) {
+		int size = cards.size();
+		this.cards = cards;
+		this.required = new int[size];
+		this.pips = new long[size];
+		this.complex = new int[size];
+		int complexCount = 0;
+		ManaCost[] costs = new ManaCost[size];
+		for (int i = 0; i < size; i++) {
+			ManaCost cost = cards.get(i).manaCost();
+			long lanes = simplePips(cost);
+			if (lanes != -1) {
+				// not converted(), which counts {C} as zero
+				int needed = cost.colorless();
+				for (int lane = 0; lane < LANES; lane++) {
+					needed += (int) (lanes >>> (lane * 8)) & 0xFF;
+				}
+				required[i] = needed;
+				pips[i] = lanes;
+				complex[i] = SIMPLE;
+			} else {
+				costs[complexCount] = cost;
+				complex[i] = complexCount++;
+			}
+		}
+		this.costs = Arrays.copyOf(costs, complexCount);
+	}
+
+	/**
+	 * Returns the castability of all cards in the given database.
+	 */
+	public static Castability of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns the castability of the given cards, which keep their iteration
+	 * order as ordinals.
+	 */
+	public static Castability of(Collection<? extends Card> cards) {
+		return new Castability(ImmutableList.<Card> copyOf(cards));
+	}
+
+	/**
+	 * Returns the mana base made of one basic land of each given type, such as
+	 * {@code "Forest"}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a type is not one of {@link Subtype#BASIC_LAND_TYPES}
+	 */
+	public static ManaPool basicLands(Multiset<String> landTypes) {
+		ManaPool result = ManaPool.EMPTY;
+		for (Multiset.Entry<String> entry : landTypes.entrySet()) {
+			Color color = Subtype.BASIC_LAND_TYPES.get(entry.getElement());
+			checkArgument(color != null, "not a basic land type: %s",
+					entry.getElement());
+			result = result.plus(color, entry.getCount());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the mana base made of one land producing each given color.
+	 */
+	public static ManaPool lands(Multiset<Color> colors) {
+		ManaPool result = ManaPool.EMPTY;
+		for (Multiset.Entry<Color> entry : colors.entrySet()) {
+			result = result.plus(entry.getElement(), entry.getCount());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cards, in ordinal order.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Returns the ordinals of the cards that can be cast with at most
+	 * {@code mana} of the given lands, paying no life.
+	 */
+	public BitSet castable(ManaPool lands, int mana) {
+		return castable(lands, mana, 0);
+	}
+
+	/**
+	 * Returns the ordinals of the cards that can be cast with at most
+	 * {@code mana} of the given lands, paying at most {@code life} life for
+	 * Phyrexian symbols.
+	 */
+	public BitSet castable(ManaPool lands, int mana, int life) {
+		long[] words = new long[wordCount()];
+		new Scan(new Query(lands, mana, life), words, 0, words.length).compute();
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Same as {@link #castable(ManaPool, int, int)}, scanning ranges of cards
+	 * in parallel on the given pool.
+	 */
+	public BitSet castable(ManaPool lands, int mana, int life, ForkJoinPool pool) {
+		long[] words = new long[wordCount()];
+		pool.invoke(new Scan(new Query(lands, mana, life), words, 0, words.length));
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Returns the cards that can be cast with at most {@code mana} of the
+	 * given lands, paying at most {@code life} life, in ordinal order.
+	 */
+	public ImmutableList<Card> castableCards(ManaPool lands, int mana, int life) {
+		BitSet ordinals = castable(lands, mana, life);
+		ImmutableList.Builder<Card> result = ImmutableList.builder();
+		for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+			result.add(cards.get(i));
+		}
+		return result.build();
+	}
+
+	private int wordCount() {
+		return (cards.size() + WORD - 1) / WORD;
+	}
+
+	/*
+	 * Returns the pips of a cost with only primary symbols, {C}, generic mana
+	 * and {X}, packed into lanes, or -1 for any other cost.
+	 */
+	private static long simplePips(ManaCost cost) {
+		if (cost.containsAnyOf(Group.HYBRID)
+				|| cost.containsAnyOf(Group.MONOCOLORED_HYBRID)
+				|| cost.containsAnyOf(Group.PHYREXIAN)) {
+			return -1;
+		}
+		long result = 0;
+		for (Color color : Color.values()) {
+			int count = cost.count(primary(color));
+			if (count > MAX_LANE) {
+				return -1;
+			}
+			result |= (long) count << (color.ordinal() * 8);
+		}
+		int count = cost.count(Symbol.COLORLESS);
+		if (count > MAX_LANE) {
+			return -1;
+		}
+		return result | (long) count << ((LANES - 1) * 8);
+	}
+
+	private static Symbol primary(Color color) {
+		return PRIMARY[color.ordinal()];
+	}
+
+	/*
+	 * A mana base, prepared for scanning.
+	 */
+	private static final class Query {
+
+		final ManaPool lands;
+		final int mana;
+		final int life;
+		final long available;
+
+		Query(ManaPool lands, int mana, int life) {
+			this.lands = lands;
+			this.mana = Math.min(mana, lands.total());
+			this.life = life;
+			long available = 0;
+			for (Color color : Color.values()) {
+				available |= (long) Math.min(lands.count(color), MAX_LANE)
+						<< (color.ordinal() * 8);
+			}
+			this.available = available
+					| (long) Math.min(lands.colorless(), MAX_LANE) << ((LANES - 1) * 8);
+		}
+	}
+
+	/*
+	 * Scans the cards in a range of words of the result, splitting the range
+	 * in half until it is small enough. Tasks never share a word.
+	 */
+	private final class Scan extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Query query;
+		private final long[] words;
+		private final int from;
+		private final int to;
+
+		Scan(Query query, long[] words, int from, int to) {
+			this.query = query;
+			this.words = words;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override protected void compute() {
+			if (to - from <= SEQUENTIAL_WORDS) {
+				scan();
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Scan(query, words, from, mid),
+						new Scan(query, words, mid, to));
+			}
+		}
+
+		private void scan() {
+			long available = query.available | HIGH_BITS;
+			int mana = query.mana;
+			int end = Math.min(to * WORD, required.length);
+			for (int i = from * WORD; i < end; i++) {
+				boolean castable;
+				int index = complex[i];
+				if (index == SIMPLE) {
+					// a lane keeps its high bit when there is enough of that mana
+					castable = required[i] <= mana
+							& ((available - pips[i]) & HIGH_BITS) == HIGH_BITS;
+				} else {
+					int needed = query.lands.minimumMana(costs[index], query.life);
+					castable = needed != -1 && needed <= mana;
+				}
+				if (castable) {
+					words[i / WORD] |= 1L << i;
+				}
+			}
+		}
+	}
+
+}
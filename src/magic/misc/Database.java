@@ -8,28 +8,51 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import magic.Card;
 import magic.Expansion;
 import magic.Printing;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.ImmutableSortedSet.Builder;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Multiset.Entry;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.TreeMultiset;
 
+/**
+ * A collection of cards and expansions. Per-expansion and per-block queries are
+ * answered from indexes that are built from {@link #cards()} and
+ * {@link #expansions()} the first time they are needed, so implementations
+ * must not change the contents of either collection after that point.
+ */
 public abstract class Database {
 
+	private final Supplier<Indexes> indexes = Suppliers.memoize(
+			new Supplier<Indexes>() {
+				@Override public Indexes get() {
+					return new Indexes(cards(), expansions());
+				}
+			});
+
 	public abstract Collection<? extends Card> cards();
 
 	public abstract Collection<? extends Expansion> expansions();
@@ -39,13 +62,9 @@ public abstract class Database {
 	public abstract Expansion getExpansion(String name);
 
 	public ImmutableSortedSet<Expansion> getBlock(String blockName) {
-		Builder<Expansion> builder = ImmutableSortedSet.naturalOrder();
-		for (Expansion expansion : expansions()) {
-			if (blockName.equals(expansion.blockName())) {
-				builder.add(expansion);
-			}
-		}
-		return builder.build();
+		ImmutableSortedSet<Expansion> block =
+				indexes.get().blocks.get(blockName);
+		return block != null ? block : ImmutableSortedSet.<Expansion> of();
 	}
 
 	public ListMultimap<Card, Printing> printingsIn(String expansionName) {
@@ -53,11 +72,11 @@ public abstract class Database {
 	}
 
 	public ListMultimap<Card, Printing> printingsIn(Expansion expansion) {
-		ImmutableListMultimap.Builder<Card, Printing> builder = ImmutableListMultimap.builder();
-		for (Card card : cards()) {
-			builder.putAll(card, card.printings().get(expansion));
-		}
-		return builder.build();
+		ImmutableListMultimap<Card, Printing> printings =
+				indexes.get().printings.get(expansion);
+		return printings != null
+				? printings
+				: ImmutableListMultimap.<Card, Printing> of();
 	}
 
 	public Set<Expansion> getExpansions(String... codes) {
@@ -76,13 +95,36 @@ public abstract class Database {
 		return cardsIn(expansions);
 	}
 
+	/**
+	 * Returns the cards printed in any of the given expansions, in their
+	 * natural order. The result is a merge of each expansion's precomputed,
+	 * already sorted list of cards.
+	 */
 	public Set<Card> cardsIn(Collection<Expansion> expansions) {
-		ImmutableSortedSet.Builder<Card> builder = ImmutableSortedSet.naturalOrder();
+		Map<Expansion, ImmutableSortedSet<Card>> cards = indexes.get().cards;
+		List<ImmutableSortedSet<Card>> sources = new ArrayList<>(expansions.size());
 		for (Expansion expansion : expansions) {
-			builder.addAll(printingsIn(expansion).keySet());
+			ImmutableSortedSet<Card> inExpansion = cards.get(expansion);
+			if (inExpansion != null) {
+				sources.add(inExpansion);
+			}
+		}
+		switch (sources.size()) {
+			case 0:
+				return ImmutableSortedSet.of();
+			case 1:
+				return sources.get(0);
+			default:
+		}
+		Builder<Card> builder = ImmutableSortedSet.naturalOrder();
+		Card previous = null;
+		for (Card card : Iterables.mergeSorted(sources, NATURAL)) {
+			if (card != previous) {
+				builder.add(card);
+				previous = card;
+			}
 		}
-		ImmutableSet<Card> result = builder.build();
-		return result;
+		return builder.build();
 	}
 
 	public Collection<Card> readCards(Path path) throws IOException {
@@ -110,8 +152,6 @@ public abstract class Database {
 		throw new IllegalArgumentException("Cards not found: " + notFound);
 	}
 
-	private static final Pattern DECK_LINE = Pattern.compile("(\\d{0,3})\\s+(.+)");
-
 	public Multiset<Card> readDeck(Path path) throws IOException {
 		return readDeck(path, TreeMultiset.<Card> create());
 	}
@@ -124,23 +164,13 @@ public abstract class Database {
 				if (line == null) {
 					break;
 				}
-				line = line.trim();
-				if (!(line.isEmpty() || line.startsWith("#"))) {
-					Matcher matcher = DECK_LINE.matcher(line);
-					String cardName;
-					int count;
-					if (matcher.matches()) {
-						count = Integer.parseInt(matcher.group(1));
-						cardName = matcher.group(2);
-					} else {
-						count = 1;
-						cardName = line;
-					}
-					Card card = getCard(cardName);
+				DeckLine parsed = DeckLine.parse(line);
+				if (parsed != null) {
+					Card card = getCard(parsed.cardName);
 					if (card != null) {
-						deck.setCount(card, count);
+						deck.setCount(card, parsed.count);
 					} else {
-						notFound.add(cardName);
+						notFound.add(parsed.cardName);
 					}
 				}
 			}
@@ -179,4 +209,105 @@ public abstract class Database {
 		return printings;
 	}
 
+	private static final Comparator<Card> NATURAL = Ordering.natural();
+
+	/**
+	 * A line of a deck file: a card name, optionally preceded by a count of up
+	 * to three digits. Shared by {@link #readDeck(Path, Multiset)} and
+	 * {@link DeckImporter}.
+	 */
+	static final class DeckLine {
+
+		private static final Pattern PATTERN = Pattern.compile("(\\d{0,3})\\s+(.+)");
+
+		final int count;
+		final String cardName;
+
+		private DeckLine(int count, String cardName) {
+			this.count = count;
+			this.cardName = cardName;
+		}
+
+		/**
+		 * Parses a line, returning {@code null} if it is blank or a comment.
+		 */
+		static @Nullable DeckLine parse(String line) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				return null;
+			}
+			Matcher matcher = PATTERN.matcher(line);
+			if (matcher.matches()) {
+				return new DeckLine(Integer.parseInt(matcher.group(1)), matcher.group(2));
+			}
+			return new DeckLine(1, line);
+		}
+	}
+
+	/**
+	 * The per-expansion and per-block indexes. Built once, on first use.
+	 */
+	private static final class Indexes {
+
+		final ImmutableMap<Expansion, ImmutableListMultimap<Card, Printing>> printings;
+		final ImmutableMap<Expansion, ImmutableSortedSet<Card>> cards;
+		final ImmutableMap<String, ImmutableSortedSet<Expansion>> blocks;
+
+		Indexes(Collection<? extends Card> allCards,
+				Collection<? extends Expansion> allExpansions) {
+			Map<Expansion, ImmutableListMultimap.Builder<Card, Printing>> printingBuilders =
+					new HashMap<>();
+			Map<Expansion, Builder<Card>> cardBuilders = new HashMap<>();
+			for (Card card : allCards) {
+				for (Map.Entry<Expansion, ? extends Collection<? extends Printing>> entry
+						: card.printings().asMap().entrySet()) {
+					Expansion expansion = entry.getKey();
+					ImmutableListMultimap.Builder<Card, Printing> printingBuilder =
+							printingBuilders.get(expansion);
+					if (printingBuilder == null) {
+						printingBuilder = ImmutableListMultimap.builder();
+						printingBuilders.put(expansion, printingBuilder);
+						cardBuilders.put(expansion,
+								ImmutableSortedSet.<Card> naturalOrder());
+					}
+					printingBuilder.putAll(card, entry.getValue());
+					cardBuilders.get(expansion).add(card);
+				}
+			}
+			ImmutableMap.Builder<Expansion, ImmutableListMultimap<Card, Printing>> printings =
+					ImmutableMap.builder();
+			for (Map.Entry<Expansion, ImmutableListMultimap.Builder<Card, Printing>> entry
+					: printingBuilders.entrySet()) {
+				printings.put(entry.getKey(), entry.getValue().build());
+			}
+			this.printings = printings.build();
+			ImmutableMap.Builder<Expansion, ImmutableSortedSet<Card>> cards =
+					ImmutableMap.builder();
+			for (Map.Entry<Expansion, Builder<Card>> entry : cardBuilders.entrySet()) {
+				cards.put(entry.getKey(), entry.getValue().build());
+			}
+			this.cards = cards.build();
+
+			Map<String, Builder<Expansion>> blockBuilders = new HashMap<>();
+			for (Expansion expansion : allExpansions) {
+				String blockName = expansion.blockName();
+				if (blockName == null) {
+					continue;
+				}
+				Builder<Expansion> blockBuilder = blockBuilders.get(blockName);
+				if (blockBuilder == null) {
+					blockBuilder = ImmutableSortedSet.naturalOrder();
+					blockBuilders.put(blockName, blockBuilder);
+				}
+				blockBuilder.add(expansion);
+			}
+			ImmutableMap.Builder<String, ImmutableSortedSet<Expansion>> blocks =
+					ImmutableMap.builder();
+			for (Map.Entry<String, Builder<Expansion>> entry : blockBuilders.entrySet()) {
+				blocks.put(entry.getKey(), entry.getValue().build());
+			}
+			this.blocks = blocks.build();
+		}
+	}
+
 }
@@ -0,0 +1,228 @@
+package magic.misc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.misc.Database.DeckLine;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMultiset;
+import com.google.common.collect.TreeMultiset;
+
+/**
+ * Reads many deck files concurrently. Files are in the format read by
+ * {@link Database#readDeck(Path)}, but instead of throwing, each
+ * {@link ImportedDeck} reports the names that could not be found and any
+ * {@link IOException} encountered while reading it.
+ * <p>
+ * Card names are resolved through a cache shared by every file read by the
+ * same importer, including names that were not found, so each distinct line
+ * is looked up in the database only once.
+ */
+public final class DeckImporter {
+
+	private final Database database;
+	private final ConcurrentMap<String, Optional<Card>> resolved =
+			new ConcurrentHashMap<>();
+
+	private DeckImporter(Database database) {
+		this.database = checkNotNull(database);
+	}
+
+	/**
+	 * Returns an importer that resolves card names in the given database. The
+	 * database's {@link Database#getCard(String)} must be thread-safe.
+	 */
+	public static DeckImporter of(Database database) {
+		return new DeckImporter(database);
+	}
+
+	/**
+	 * Reads every regular file in the given directory, in order of file name,
+	 * using one thread per processor.
+	 */
+	public ImmutableList<ImportedDeck> importDirectory(Path directory)
+			throws IOException, InterruptedException {
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path path : stream) {
+				if (Files.isRegularFile(path)) {
+					paths.add(path);
+				}
+			}
+		}
+		Collections.sort(paths);
+		return importAll(paths);
+	}
+
+	/**
+	 * Reads the given files using one thread per processor. The results are
+	 * in the same order as the paths.
+	 */
+	public ImmutableList<ImportedDeck> importAll(Iterable<Path> paths)
+			throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors());
+		try {
+			return importAll(paths, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the given files on the given executor. The results are in the same
+	 * order as the paths. The executor is not shut down.
+	 */
+	public ImmutableList<ImportedDeck> importAll(Iterable<Path> paths,
+			ExecutorService executor) throws InterruptedException {
+		List<Future<ImportedDeck>> tasks = new ArrayList<>();
+		try {
+			for (final Path path : paths) {
+				tasks.add(executor.submit(new Callable<ImportedDeck>() {
+					@Override public ImportedDeck call() {
+						return importDeck(path);
+					}
+				}));
+			}
+			ImmutableList.Builder<ImportedDeck> result = ImmutableList.builder();
+			for (Future<ImportedDeck> task : tasks) {
+				result.add(task.get());
+			}
+			return result.build();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			Throwables.throwIfUnchecked(cause);
+			throw new RuntimeException(cause);
+		} finally {
+			for (Future<ImportedDeck> task : tasks) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Reads a single file on the calling thread.
+	 */
+	public ImportedDeck importDeck(Path path) {
+		TreeMultiset<Card> deck = TreeMultiset.create();
+		List<String> notFound = new ArrayList<>();
+		IOException error = null;
+		try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			for (;;) {
+				String line = in.readLine();
+				if (line == null) {
+					break;
+				}
+				DeckLine parsed = DeckLine.parse(line);
+				if (parsed != null) {
+					Card card = resolve(parsed.cardName);
+					if (card != null) {
+						deck.setCount(card, parsed.count);
+					} else {
+						notFound.add(parsed.cardName);
+					}
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+		}
+		return new ImportedDeck(path, ImmutableSortedMultiset.copyOfSorted(deck),
+				ImmutableList.copyOf(notFound), error);
+	}
+
+	private @Nullable Card resolve(String name) {
+		Optional<Card> card = resolved.get(name);
+		if (card == null) {
+			card = Optional.fromNullable(database.getCard(name));
+			resolved.putIfAbsent(name, card);
+		}
+		return card.orNull();
+	}
+
+	/**
+	 * The result of reading one deck file.
+	 */
+	public static final class ImportedDeck {
+
+		private final Path path;
+		private final ImmutableSortedMultiset<Card> cards;
+		private final ImmutableList<String> notFound;
+		private final @Nullable IOException error;
+
+		private ImportedDeck(Path path, ImmutableSortedMultiset<Card> cards,
+				ImmutableList<String> notFound, @Nullable IOException error) {
+			this.path = path;
+			this.cards = cards;
+			this.notFound = notFound;
+			this.error = error;
+		}
+
+		/**
+		 * Returns the file that was read.
+		 */
+		public Path path() {
+			return path;
+		}
+
+		/**
+		 * Returns the cards that were found. If the file could not be read
+		 * completely, these are the cards read before the error.
+		 */
+		public ImmutableSortedMultiset<Card> cards() {
+			return cards;
+		}
+
+		/**
+		 * Returns the names that were not found, in the order they appear in
+		 * the file.
+		 */
+		public ImmutableList<String> notFound() {
+			return notFound;
+		}
+
+		/**
+		 * Returns the exception that stopped the file from being read, or
+		 * {@code null} if it was read completely.
+		 */
+		public @Nullable IOException error() {
+			return error;
+		}
+
+		/**
+		 * Returns whether the file was read completely and every name was
+		 * found.
+		 */
+		public boolean isComplete() {
+			return error == null && notFound.isEmpty();
+		}
+
+		@Override public String toString() {
+			return path + ": " + cards.size() + " cards"
+					+ (notFound.isEmpty() ? "" : ", not found: " + notFound)
+					+ (error == null ? "" : ", error: " + error);
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+package magic.misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import magic.CollectorNumber;
+import magic.Expression;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Pools of canonical instances of the small value objects that repeat across
+ * cards and printings: variable {@link Expression}s, {@link CollectorNumber}s,
+ * subtypes, artists and watermarks. {@link Expression#of(String)} and the
+ * {@link CollectorNumber} factories return instances from these pools, and
+ * {@link MtgJsonLoader} interns subtypes, artists and watermarks in them, so a
+ * value that appears on thousands of cards is kept in memory only once.
+ * <p>
+ * Each pool is safe for concurrent use and refers to its canonical instances
+ * weakly, so a canonical instance lives exactly as long as something else
+ * refers to it: equal values interned in a pool are always the same instance,
+ * and a pool never keeps a value in memory by itself. Every pool records
+ * {@link CacheStats}, and estimates the number of bytes saved by returning a
+ * canonical instance in place of an equal sample.
+ *
+ * @see magic.ManaCost#cacheStats()
+ */
+public final class Flyweights {
+
+	/*
+	 * Rough sizes on a 64-bit VM with compressed references, where objects are
+	 * aligned to eight bytes and have twelve-byte headers.
+	 */
+	private static final int STRING_SIZE = 24;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int CONSTANT_EXPRESSION_SIZE = 16;
+	private static final int VARIABLE_EXPRESSION_SIZE = 32;
+	private static final int COLLECTOR_NUMBER_SIZE = 24;
+
+	/**
+	 * Variable and uncommon constant {@link Expression}s.
+	 */
+	public static final Pool<Expression> EXPRESSIONS = new Pool<Expression>("expressions") {
+		@Override long footprint(Expression value) {
+			return value.isConstant()
+					? CONSTANT_EXPRESSION_SIZE
+					: VARIABLE_EXPRESSION_SIZE + stringFootprint(value.toString());
+		}
+	};
+
+	/**
+	 * {@link CollectorNumber}s.
+	 */
+	public static final Pool<CollectorNumber> COLLECTOR_NUMBERS =
+			new Pool<CollectorNumber>("collector numbers") {
+				@Override long footprint(CollectorNumber value) {
+					return COLLECTOR_NUMBER_SIZE;
+				}
+			};
+
+	/**
+	 * Subtypes, such as {@code "Goblin"} or {@code "Aura"}.
+	 */
+	public static final Pool<String> SUBTYPES = newStringPool("subtypes");
+
+	/**
+	 * Names of artists.
+	 */
+	public static final Pool<String> ARTISTS = newStringPool("artists");
+
+	/**
+	 * Watermarks.
+	 */
+	public static final Pool<String> WATERMARKS = newStringPool("watermarks");
+
+	private static final ImmutableList<Pool<?>> POOLS = ImmutableList.<Pool<?>> of(
+			EXPRESSIONS, COLLECTOR_NUMBERS, SUBTYPES, ARTISTS, WATERMARKS);
+
+	private Flyweights() {}
+
+	/**
+	 * Returns every pool.
+	 */
+	public static ImmutableList<Pool<?>> pools() {
+		return POOLS;
+	}
+
+	/**
+	 * Returns the estimated number of bytes saved by all pools.
+	 */
+	public static long savedBytes() {
+		long result = 0;
+		for (Pool<?> pool : POOLS) {
+			result += pool.savedBytes();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns one line for each pool, as by {@link Pool#toString()}.
+	 */
+	public static String report() {
+		StringBuilder builder = new StringBuilder();
+		for (Pool<?> pool : POOLS) {
+			builder.append(pool).append(System.lineSeparator());
+		}
+		return builder.toString();
+	}
+
+	private static Pool<String> newStringPool(String name) {
+		return new Pool<String>(name) {
+			@Override long footprint(String value) {
+				return stringFootprint(value);
+			}
+		};
+	}
+
+	private static long stringFootprint(String value) {
+		return STRING_SIZE + align(ARRAY_HEADER_SIZE + 2L * value.length());
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7;
+	}
+
+	/**
+	 * A weak, concurrent {@link Interner} of one type of value.
+	 *
+	 * @param <T>
+	 *            the type of value, which must be immutable
+	 */
+	public abstract static class Pool<T> implements Interner<T> {
+
+		private final String name;
+		private final Interner<T> canonical = Interners.newWeakInterner();
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong savedBytes = new AtomicLong();
+
+		private Pool(String name) {
+			this.name = name;
+		}
+
+		/*
+		 * Returns the estimated number of bytes a value occupies, including
+		 * the objects it refers to that are not shared.
+		 */
+		abstract long footprint(T value);
+
+		/**
+		 * Returns the canonical instance equal to the given sample, which
+		 * becomes the canonical instance if there is none.
+		 */
+		@Override public T intern(T sample) {
+			requests.incrementAndGet();
+			T result = canonical.intern(sample);
+			if (result != sample) {
+				hits.incrementAndGet();
+				savedBytes.addAndGet(footprint(sample));
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the name of the values in this pool.
+		 */
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * Returns the statistics of this pool, in which a hit is a sample for
+		 * which there already was a canonical instance, and a miss is a sample
+		 * that became one. Only hits and misses are counted.
+		 */
+		public CacheStats stats() {
+			// hits first, so that there are never more hits than requests
+			long hitCount = hits.get();
+			return new CacheStats(hitCount, requests.get() - hitCount, 0, 0, 0, 0);
+		}
+
+		/**
+		 * Returns the estimated number of bytes saved by returning canonical
+		 * instances in place of equal samples.
+		 */
+		public long savedBytes() {
+			return savedBytes.get();
+		}
+
+		@Override public String toString() {
+			CacheStats stats = stats();
+			return String.format("%s: %d requests, %d hits, %d bytes saved",
+					name, stats.requestCount(), stats.hitCount(), savedBytes());
+		}
+	}
+
+}
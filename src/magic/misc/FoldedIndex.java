@@ -0,0 +1,74 @@
+package magic.misc;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+
+/**
+ * An immutable hash table keyed by {@link Folding folded} strings. Lookups
+ * hash and compare the query in place, so they never allocate.
+ * 
+ * @param <V>
+ *            the type of value in the table
+ */
+final class FoldedIndex<V> {
+
+	private final String[] keys;
+	private final int[] hashes;
+	private final Object[] values;
+	private final int mask;
+
+	/**
+	 * Creates an index of the given values by the given key.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if two values have keys that are equal when folded
+	 */
+	FoldedIndex(Iterable<? extends V> values, Function<? super V, String> key) {
+		int count = 0;
+		for (@SuppressWarnings("unused") V value : values) {
+			count++;
+		}
+		int capacity = Integer.highestOneBit(Math.max(count * 2, 2) - 1) << 1;
+		this.keys = new String[capacity];
+		this.hashes = new int[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		for (V value : values) {
+			String k = key.apply(value);
+			int hash = Folding.hash(k);
+			int slot = spread(hash) & mask;
+			while (keys[slot] != null) {
+				if (hashes[slot] == hash && Folding.equals(keys[slot], k)) {
+					throw new IllegalArgumentException(String.format(
+							"duplicate key \"%s\" (already used by \"%s\")",
+							k, keys[slot]));
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = k;
+			hashes[slot] = hash;
+			this.values[slot] = value;
+		}
+	}
+
+	/**
+	 * Returns the value whose key is equal to the given key when folded, or
+	 * {@code null} if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable V get(CharSequence key) {
+		int hash = Folding.hash(key);
+		for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+			if (hashes[slot] == hash && Folding.equals(keys[slot], key)) {
+				return (V) values[slot];
+			}
+		}
+		return null;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+}
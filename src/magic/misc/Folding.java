@@ -0,0 +1,145 @@
+package magic.misc;
+
+/**
+ * Utility for comparing and hashing strings after folding them to lowercase
+ * ASCII. Folding removes case and diacritics, so {@code "&AElig;ther Vial"},
+ * {@code "AETHER VIAL"} and {@code "aether vial"} are all equal, as are
+ * {@code "Lim-D&ucirc;l's Vault"} and {@code "Lim-Dul's Vault"}.
+ * <p>
+ * {@link #hash(CharSequence)} and {@link #equals(CharSequence, CharSequence)}
+ * work directly on their input and never allocate, so they can be used for
+ * lookups on hot paths.
+ */
+public final class Folding {
+
+	private Folding() {}
+
+	/*
+	 * Folded forms of U+00C0 to U+00FF. Most characters fold to a single
+	 * letter; the ligatures, thorn and sharp s fold to two. The multiplication
+	 * and division signs are left alone.
+	 */
+	private static final String[] LATIN_1 = {
+			"a", "a", "a", "a", "a", "a", "ae", "c", // U+00C0
+			"e", "e", "e", "e", "i", "i", "i", "i", // U+00C8
+			"d", "n", "o", "o", "o", "o", "o", "\u00d7", // U+00D0
+			"o", "u", "u", "u", "u", "y", "th", "ss", // U+00D8
+			"a", "a", "a", "a", "a", "a", "ae", "c", // U+00E0
+			"e", "e", "e", "e", "i", "i", "i", "i", // U+00E8
+			"d", "n", "o", "o", "o", "o", "o", "\u00f7", // U+00F0
+			"o", "u", "u", "u", "u", "y", "th", "y" // U+00F8
+	};
+
+	private static final int[] EXPANDED = new int[LATIN_1.length];
+
+	static {
+		for (int i = 0; i < LATIN_1.length; i++) {
+			String folded = LATIN_1[i];
+			EXPANDED[i] = folded.length() == 1
+					? folded.charAt(0)
+					: folded.charAt(0) | folded.charAt(1) << 16;
+		}
+	}
+
+	/**
+	 * Returns the folded form of a character, packed into an {@code int}: the
+	 * low 16 bits hold the first folded character, and the high 16 bits hold a
+	 * second folded character, or zero if the character folds to just one.
+	 */
+	static int expand(char c) {
+		if (c < 0x80) {
+			return 'A' <= c && c <= 'Z' ? c + ('a' - 'A') : c;
+		}
+		if (0xC0 <= c && c <= 0xFF) {
+			return EXPANDED[c - 0xC0];
+		}
+		switch (c) {
+			case '\u0152': // OE ligature
+			case '\u0153':
+				return 'o' | 'e' << 16;
+			case '\u2018': // curly quotes
+			case '\u2019':
+				return '\'';
+			case '\u201c':
+			case '\u201d':
+				return '"';
+			case '\u2013': // dashes
+			case '\u2014':
+				return '-';
+			default:
+				return Character.toLowerCase(c);
+		}
+	}
+
+	/**
+	 * Returns the folded form of the given input.
+	 */
+	public static String fold(CharSequence input) {
+		StringBuilder builder = new StringBuilder(input.length());
+		for (int i = 0; i < input.length(); i++) {
+			int folded = expand(input.charAt(i));
+			builder.append((char) folded);
+			if (folded >>> 16 != 0) {
+				builder.append((char) (folded >>> 16));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns a hash code of the folded form of the given input. The result is
+	 * the same as {@code fold(input).hashCode()}.
+	 */
+	public static int hash(CharSequence input) {
+		int hash = 0;
+		for (int i = 0; i < input.length(); i++) {
+			int folded = expand(input.charAt(i));
+			hash = 31 * hash + (folded & 0xFFFF);
+			if (folded >>> 16 != 0) {
+				hash = 31 * hash + (folded >>> 16);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns whether the folded forms of the two inputs are equal.
+	 */
+	public static boolean equals(CharSequence a, CharSequence b) {
+		int i = 0;
+		int j = 0;
+		int pendingA = 0;
+		int pendingB = 0;
+		for (;;) {
+			int nextA;
+			if (pendingA != 0) {
+				nextA = pendingA;
+				pendingA = 0;
+			} else if (i < a.length()) {
+				int folded = expand(a.charAt(i++));
+				nextA = folded & 0xFFFF;
+				pendingA = folded >>> 16;
+			} else {
+				nextA = -1;
+			}
+			int nextB;
+			if (pendingB != 0) {
+				nextB = pendingB;
+				pendingB = 0;
+			} else if (j < b.length()) {
+				int folded = expand(b.charAt(j++));
+				nextB = folded & 0xFFFF;
+				pendingB = folded >>> 16;
+			} else {
+				nextB = -1;
+			}
+			if (nextA != nextB) {
+				return false;
+			}
+			if (nextA == -1) {
+				return true;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.Expansion;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * An immutable, in-memory {@link Database}. Cards are looked up by name
+ * ignoring case and diacritics (see {@link Folding}), and expansions are looked
+ * up by code or by name, ignoring case. Lookups use dedicated hash tables and
+ * do not allocate.
+ * <p>
+ * Instances are created with a {@link Builder}, which accepts any
+ * implementation of {@link Card} and {@link Expansion}.
+ */
+public final class ImmutableDatabase extends Database {
+
+	private static final Function<Card, String> CARD_NAME =
+			new Function<Card, String>() {
+				@Override public String apply(Card input) {
+					return input.name();
+				}
+			};
+
+	private static final Function<Expansion, String> EXPANSION_CODE =
+			new Function<Expansion, String>() {
+				@Override public String apply(Expansion input) {
+					return input.code();
+				}
+			};
+
+	private static final Function<Expansion, String> EXPANSION_NAME =
+			new Function<Expansion, String>() {
+				@Override public String apply(Expansion input) {
+					return input.name();
+				}
+			};
+
+	private final ImmutableList<Card> cards;
+	private final ImmutableSortedSet<Expansion> expansions;
+	private final FoldedIndex<Card> cardsByName;
+	private final FoldedIndex<Expansion> expansionsByCode;
+	private final FoldedIndex<Expansion> expansionsByName;
+
+	private ImmutableDatabase(ImmutableList<Card> cards,
+			ImmutableSortedSet<Expansion> expansions) {
+		this.cards = cards;
+		this.expansions = expansions;
+		this.cardsByName = new FoldedIndex<>(cards, CARD_NAME);
+		this.expansionsByCode = new FoldedIndex<>(expansions, EXPANSION_CODE);
+		this.expansionsByName = new FoldedIndex<>(expansions, EXPANSION_NAME);
+	}
+
+	/**
+	 * Returns a new {@link Builder}.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns an {@code ImmutableDatabase} containing the cards and expansions
+	 * of the given database. If it is already an {@code ImmutableDatabase}, it
+	 * is returned as is.
+	 */
+	public static ImmutableDatabase copyOf(Database database) {
+		if (database instanceof ImmutableDatabase) {
+			return (ImmutableDatabase) database;
+		}
+		return builder()
+				.addExpansions(database.expansions())
+				.addCards(database.cards())
+				.build();
+	}
+
+	/**
+	 * Returns all cards in the order they were added.
+	 */
+	@Override public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Returns all expansions in their natural order.
+	 */
+	@Override public ImmutableSortedSet<Expansion> expansions() {
+		return expansions;
+	}
+
+	/**
+	 * Returns the card with the given name, ignoring case and diacritics, or
+	 * {@code null} if there is no such card.
+	 */
+	@Override public @Nullable Card getCard(String name) {
+		return cardsByName.get(name);
+	}
+
+	/**
+	 * Returns the expansion with the given code, or if there is none, the
+	 * expansion with the given name, ignoring case in both; returns
+	 * {@code null} if neither exists.
+	 */
+	@Override public @Nullable Expansion getExpansion(String name) {
+		Expansion expansion = expansionsByCode.get(name);
+		return expansion != null ? expansion : expansionsByName.get(name);
+	}
+
+	/**
+	 * A builder for {@link ImmutableDatabase}. Expansions in which added cards
+	 * are printed are added automatically.
+	 */
+	public static final class Builder {
+
+		private final Set<Card> cards = new LinkedHashSet<>();
+		private final Set<Expansion> expansions = new LinkedHashSet<>();
+
+		private Builder() {}
+
+		public Builder addCard(Card card) {
+			cards.add(card);
+			return this;
+		}
+
+		public Builder addCards(Iterable<? extends Card> cards) {
+			for (Card card : cards) {
+				addCard(card);
+			}
+			return this;
+		}
+
+		public Builder addExpansion(Expansion expansion) {
+			expansions.add(expansion);
+			return this;
+		}
+
+		public Builder addExpansions(Iterable<? extends Expansion> expansions) {
+			for (Expansion expansion : expansions) {
+				addExpansion(expansion);
+			}
+			return this;
+		}
+
+		/**
+		 * Builds the database.
+		 * 
+		 * @throws IllegalArgumentException
+		 *             if two cards have the same name, or two expansions have
+		 *             the same code or name, ignoring case and diacritics, or
+		 *             two expansions are equal in their natural order
+		 */
+		public ImmutableDatabase build() {
+			Collection<Expansion> allExpansions = new LinkedHashSet<>(expansions);
+			for (Card card : cards) {
+				allExpansions.addAll(card.printings().keySet());
+			}
+			List<Expansion> sorted = new ArrayList<>(allExpansions);
+			Collections.sort(sorted);
+			for (int i = 1; i < sorted.size(); i++) {
+				Expansion previous = sorted.get(i - 1);
+				Expansion expansion = sorted.get(i);
+				if (previous.compareTo(expansion) == 0) {
+					// a sorted set would keep only one of them
+					throw new IllegalArgumentException(String.format(
+							"expansions %s and %s have the same name and release date",
+							previous.code(), expansion.code()));
+				}
+			}
+			return new ImmutableDatabase(
+					ImmutableList.copyOf(cards),
+					ImmutableSortedSet.copyOf(sorted));
+		}
+	}
+
+}
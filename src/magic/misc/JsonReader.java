@@ -0,0 +1,391 @@
+package magic.misc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * A minimal pull parser for JSON. Input is read through a fixed-size buffer,
+ * so documents of any size can be processed in constant memory, and any value
+ * can be skipped or captured as raw text to be parsed later, possibly on
+ * another thread.
+ * <p>
+ * The reader checks that brackets are balanced and that tokens are well
+ * formed, but treats commas and colons as whitespace; it is intended for
+ * reading trusted data, not for validating it.
+ */
+final class JsonReader implements Closeable {
+
+	enum Token {
+		BEGIN_OBJECT,
+		END_OBJECT,
+		BEGIN_ARRAY,
+		END_ARRAY,
+		STRING,
+		NUMBER,
+		TRUE,
+		FALSE,
+		NULL,
+		END_DOCUMENT
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader in;
+	private final char[] buffer;
+	private int pos;
+	private int limit;
+	private long offset;
+
+	private Token peeked;
+	private final StringBuilder scratch = new StringBuilder();
+	private StringBuilder capture;
+	private int captureStart;
+
+	JsonReader(Reader in) {
+		this.in = in;
+		this.buffer = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * Returns a reader over a value captured with {@link #captureValue()}.
+	 */
+	static JsonReader of(String json) {
+		return new JsonReader(new StringReader(json));
+	}
+
+	/**
+	 * Returns the type of the next token without consuming it.
+	 */
+	Token peek() throws IOException {
+		if (peeked == null) {
+			peeked = readToken();
+		}
+		return peeked;
+	}
+
+	/**
+	 * Returns {@code true} if the current object or array has another element.
+	 */
+	boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY
+				&& token != Token.END_DOCUMENT;
+	}
+
+	void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+	}
+
+	void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+	}
+
+	void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+	}
+
+	void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+	}
+
+	/**
+	 * Consumes the next property name.
+	 */
+	String nextName() throws IOException {
+		expect(Token.STRING);
+		return readString();
+	}
+
+	/**
+	 * Consumes the next string, or the text of the next number.
+	 */
+	String nextString() throws IOException {
+		Token token = peek();
+		if (token == Token.STRING) {
+			peeked = null;
+			return readString();
+		}
+		if (token == Token.NUMBER) {
+			peeked = null;
+			return readNumber();
+		}
+		throw syntaxError("expected STRING but was " + token);
+	}
+
+	int nextInt() throws IOException {
+		String value = nextString();
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw syntaxError("expected an int but was " + value);
+		}
+	}
+
+	boolean nextBoolean() throws IOException {
+		Token token = peek();
+		if (token != Token.TRUE && token != Token.FALSE) {
+			throw syntaxError("expected a boolean but was " + token);
+		}
+		peeked = null;
+		return token == Token.TRUE;
+	}
+
+	void nextNull() throws IOException {
+		expect(Token.NULL);
+	}
+
+	/**
+	 * Consumes and discards the next value, including any nested values.
+	 */
+	void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			Token token = peek();
+			peeked = null;
+			switch (token) {
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			case STRING:
+				skipString();
+				break;
+			case NUMBER:
+				readNumber();
+				break;
+			case END_DOCUMENT:
+				throw new EOFException("unexpected end of input");
+			default:
+				break;
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * Consumes the next value, including any nested values, and returns its
+	 * source text. Only the captured value is held in memory.
+	 */
+	String captureValue() throws IOException {
+		if (peeked != null) {
+			throw new IllegalStateException("cannot capture a peeked value");
+		}
+		skipWhitespace();
+		capture = new StringBuilder();
+		captureStart = pos;
+		try {
+			skipValue();
+			capture.append(buffer, captureStart, pos - captureStart);
+			return capture.toString();
+		} finally {
+			capture = null;
+		}
+	}
+
+	@Override public void close() throws IOException {
+		in.close();
+	}
+
+	private void expect(Token expected) throws IOException {
+		Token token = peek();
+		if (token != expected) {
+			throw syntaxError("expected " + expected + " but was " + token);
+		}
+		peeked = null;
+	}
+
+	private Token readToken() throws IOException {
+		skipWhitespace();
+		if (pos == limit) {
+			return Token.END_DOCUMENT;
+		}
+		char c = buffer[pos];
+		switch (c) {
+		case '{':
+			pos++;
+			return Token.BEGIN_OBJECT;
+		case '}':
+			pos++;
+			return Token.END_OBJECT;
+		case '[':
+			pos++;
+			return Token.BEGIN_ARRAY;
+		case ']':
+			pos++;
+			return Token.END_ARRAY;
+		case '"':
+			pos++;
+			return Token.STRING;
+		case 't':
+			literal("true");
+			return Token.TRUE;
+		case 'f':
+			literal("false");
+			return Token.FALSE;
+		case 'n':
+			literal("null");
+			return Token.NULL;
+		default:
+			if (c == '-' || ('0' <= c && c <= '9')) {
+				return Token.NUMBER;
+			}
+			throw syntaxError("unexpected character '" + c + "'");
+		}
+	}
+
+	private void literal(String word) throws IOException {
+		for (int i = 0; i < word.length(); i++) {
+			if (!fill() || buffer[pos] != word.charAt(i)) {
+				throw syntaxError("expected " + word);
+			}
+			pos++;
+		}
+	}
+
+	private void skipWhitespace() throws IOException {
+		while (fill()) {
+			char c = buffer[pos];
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ','
+					|| c == ':') {
+				pos++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Reads the rest of a string whose opening quote has been consumed.
+	 */
+	private String readString() throws IOException {
+		// fast path: no escapes and no refill
+		for (int i = pos; i < limit; i++) {
+			char c = buffer[i];
+			if (c == '"') {
+				String result = new String(buffer, pos, i - pos);
+				pos = i + 1;
+				return result;
+			}
+			if (c == '\\') {
+				break;
+			}
+		}
+		scratch.setLength(0);
+		while (true) {
+			if (!fill()) {
+				throw new EOFException("unterminated string");
+			}
+			char c = buffer[pos++];
+			if (c == '"') {
+				return scratch.toString();
+			}
+			scratch.append(c == '\\' ? readEscape() : c);
+		}
+	}
+
+	private void skipString() throws IOException {
+		while (true) {
+			if (!fill()) {
+				throw new EOFException("unterminated string");
+			}
+			char c = buffer[pos++];
+			if (c == '"') {
+				return;
+			}
+			if (c == '\\') {
+				readEscape();
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		if (!fill()) {
+			throw new EOFException("unterminated escape");
+		}
+		char c = buffer[pos++];
+		switch (c) {
+		case '"':
+		case '\\':
+		case '/':
+			return c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				if (!fill()) {
+					throw new EOFException("unterminated escape");
+				}
+				int digit = Character.digit(buffer[pos++], 16);
+				if (digit == -1) {
+					throw syntaxError("malformed unicode escape");
+				}
+				value = value << 4 | digit;
+			}
+			return (char) value;
+		default:
+			throw syntaxError("invalid escape '\\" + c + "'");
+		}
+	}
+
+	private String readNumber() throws IOException {
+		scratch.setLength(0);
+		while (fill()) {
+			char c = buffer[pos];
+			if (('0' <= c && c <= '9') || c == '-' || c == '+' || c == '.'
+					|| c == 'e' || c == 'E') {
+				scratch.append(c);
+				pos++;
+			} else {
+				break;
+			}
+		}
+		return scratch.toString();
+	}
+
+	/*
+	 * Ensures at least one character is buffered, returning false at the end
+	 * of input. Characters that are about to be discarded are saved to the
+	 * capture first.
+	 */
+	private boolean fill() throws IOException {
+		if (pos < limit) {
+			return true;
+		}
+		if (capture != null) {
+			capture.append(buffer, captureStart, limit - captureStart);
+			captureStart = 0;
+		}
+		offset += limit;
+		pos = 0;
+		limit = 0;
+		int read;
+		while ((read = in.read(buffer, 0, buffer.length)) == 0) {
+			// keep trying
+		}
+		if (read == -1) {
+			return false;
+		}
+		limit = read;
+		return true;
+	}
+
+	private IOException syntaxError(String message) {
+		return new IOException(message + " at offset " + (offset + pos));
+	}
+
+}
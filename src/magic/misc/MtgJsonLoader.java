@@ -0,0 +1,524 @@
+package magic.misc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+
+import magic.CollectorNumber;
+import magic.Color;
+import magic.Expansion.BorderColor;
+import magic.Expansion.Release;
+import magic.Expression;
+import magic.Link.Layout;
+import magic.ManaCost;
+import magic.Rarity;
+import magic.Supertype;
+import magic.Type;
+import magic.impl.SimpleCard;
+import magic.impl.SimpleExpansion;
+import magic.impl.SimplePrinting;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+/**
+ * Loads a {@link Database} from JSON in the format of MTGJSON's
+ * {@code AllSets.json}: an object mapping each expansion code to an expansion
+ * object with a {@code cards} array.
+ * <p>
+ * The input is tokenized incrementally. Each expansion object is captured as
+ * raw text and parsed on a {@link ForkJoinPool} while the next one is read;
+ * the number of captured expansions waiting to be parsed is bounded, so peak
+ * memory use stays close to the size of the loaded data rather than the size
+ * of the file. Cards that appear in several expansions are merged into a
+ * single {@link SimpleCard}, and {@link magic.Link}s between the halves of
+ * two-part cards are resolved once every expansion has been parsed.
+ * <p>
+ * Mana costs, power and toughness expressions, collector numbers, subtypes,
+ * artists and watermarks are interned in their global pools (see
+ * {@link Flyweights}), and other common strings are interned across the whole
+ * load.
+ * <p>
+ * Expansions with a release type or border color that cannot be represented
+ * are skipped, as are cards with a layout, type, supertype, mana symbol or
+ * color identity that cannot be represented, and cards that have no types or
+ * only one of power and toughness.
+ */
+public final class MtgJsonLoader {
+
+	private static final ImmutableMap<String, Release> RELEASES =
+			ImmutableMap.<String, Release> builder()
+					.put("core", Release.CORE_SET)
+					.put("expansion", Release.EXPANSION)
+					.put("reprint", Release.REPRINT)
+					.put("promo", Release.PROMOTIONAL)
+					.put("starter", Release.STARTER)
+					.put("box", Release.BOX)
+					.put("duel deck", Release.DUEL_DECKS)
+					.put("from the vault", Release.FROM_THE_VAULT)
+					.put("premium deck", Release.PREMIUM_DECK_SERIES)
+					.put("planechase", Release.PLANECHASE)
+					.put("archenemy", Release.ARCHENEMY)
+					.put("commander", Release.COMMANDER)
+					.put("conspiracy", Release.CONSPIRACY)
+					.put("masters", Release.REPRINT)
+					.build();
+
+	private static final ImmutableMap<String, BorderColor> BORDERS =
+			ImmutableMap.of(
+					"black", BorderColor.BLACK,
+					"white", BorderColor.WHITE);
+
+	/*
+	 * Layouts of two-part cards; other layouts are single cards unless they
+	 * are unsupported.
+	 */
+	private static final ImmutableMap<String, Layout> LAYOUTS =
+			ImmutableMap.of(
+					"split", Layout.SPLIT,
+					"aftermath", Layout.SPLIT,
+					"flip", Layout.FLIP,
+					"double-faced", Layout.DOUBLE_FACED);
+
+	private static final ImmutableList<String> UNSUPPORTED_LAYOUTS =
+			ImmutableList.of("token", "plane", "scheme", "phenomenon",
+					"vanguard", "meld");
+
+	private static final ImmutableMap<String, Type> TYPES = byName(Type.values());
+	private static final ImmutableMap<String, Supertype> SUPERTYPES = byName(Supertype.values());
+	private static final ImmutableMap<String, Rarity> RARITIES = byName(Rarity.values());
+	private static final ImmutableMap<String, Color> COLORS = byName(Color.values());
+
+	private static <E extends Enum<E>> ImmutableMap<String, E> byName(E[] values) {
+		return Maps.uniqueIndex(ImmutableList.copyOf(values),
+				Functions.toStringFunction());
+	}
+
+	private final ForkJoinPool pool;
+	private final Interner<String> strings = Interners.newStrongInterner();
+
+	private MtgJsonLoader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Loads the UTF-8 encoded JSON file at the given path, using a new
+	 * {@link ForkJoinPool} with one thread per processor.
+	 */
+	public static ImmutableDatabase load(Path path) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool();
+		try (Reader in = Files.newBufferedReader(path, UTF_8)) {
+			return load(in, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Loads JSON from the given reader, parsing expansions on the given pool.
+	 * The reader is not closed.
+	 */
+	public static ImmutableDatabase load(Reader in, ForkJoinPool pool)
+			throws IOException {
+		return new MtgJsonLoader(pool).read(in);
+	}
+
+	private ImmutableDatabase read(Reader in) throws IOException {
+		List<Future<ParsedExpansion>> tasks = new ArrayList<>();
+		final Semaphore inFlight = new Semaphore(2 * pool.getParallelism());
+		JsonReader json = new JsonReader(in);
+		try {
+			json.beginObject();
+			while (json.hasNext()) {
+				json.nextName();
+				inFlight.acquire();
+				final String raw = json.captureValue();
+				tasks.add(pool.submit(new Callable<ParsedExpansion>() {
+					@Override public ParsedExpansion call() throws IOException {
+						try {
+							return parseExpansion(JsonReader.of(raw));
+						} finally {
+							inFlight.release();
+						}
+					}
+				}));
+			}
+			json.endObject();
+		} catch (InterruptedException e) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (IOException | RuntimeException e) {
+			cancel(tasks);
+			throw e;
+		}
+
+		Map<String, CardRecord> records = new LinkedHashMap<>();
+		ImmutableDatabase.Builder database = ImmutableDatabase.builder();
+		for (Future<ParsedExpansion> task : tasks) {
+			ParsedExpansion parsed = join(task);
+			if (parsed == null) {
+				continue;
+			}
+			database.addExpansion(parsed.expansion);
+			for (CardRecord record : parsed.cards) {
+				String key = Folding.fold(record.name);
+				CardRecord first = records.get(key);
+				if (first == null) {
+					records.put(key, record);
+				} else {
+					first.card.addPrinting(record.printing);
+				}
+			}
+		}
+		return database.addCards(link(records)).build();
+	}
+
+	/*
+	 * Builds every card, then links two-part cards by name.
+	 */
+	private static List<SimpleCard> link(Map<String, CardRecord> records) {
+		Map<String, SimpleCard> cards = new LinkedHashMap<>();
+		for (Map.Entry<String, CardRecord> entry : records.entrySet()) {
+			CardRecord record = entry.getValue();
+			record.card.addPrinting(record.printing);
+			cards.put(entry.getKey(), record.card.build());
+		}
+		for (Map.Entry<String, CardRecord> entry : records.entrySet()) {
+			CardRecord record = entry.getValue();
+			if (record.layout == null || record.names.size() != 2
+					|| !record.names.get(0).equals(record.name)) {
+				continue;
+			}
+			SimpleCard second = cards.get(Folding.fold(record.names.get(1)));
+			if (second != null && second.link() == null) {
+				SimpleCard.link(cards.get(entry.getKey()), second, record.layout);
+			}
+		}
+		return Ordering.natural().sortedCopy(cards.values());
+	}
+
+	private static ParsedExpansion join(Future<ParsedExpansion> task)
+			throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), IOException.class);
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static void cancel(List<? extends Future<?>> tasks) {
+		for (Future<?> task : tasks) {
+			task.cancel(false);
+		}
+	}
+
+	private @Nullable ParsedExpansion parseExpansion(JsonReader json)
+			throws IOException {
+		SimpleExpansion.Builder expansion = SimpleExpansion.builder();
+		String releaseType = null;
+		boolean onlineOnly = false;
+		boolean supported = true;
+		// the cards array may precede the expansion's other attributes, so
+		// printings are created once the expansion is built
+		List<CardRecord> cards = new ArrayList<>();
+		boolean hasCollectorNumbers = true;
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if (json.peek() == JsonReader.Token.NULL) {
+				json.nextNull();
+				continue;
+			}
+			switch (name) {
+			case "name":
+				expansion.name(json.nextString());
+				break;
+			case "code":
+				expansion.code(json.nextString());
+				break;
+			case "releaseDate":
+				expansion.releaseDate(LocalDate.parse(json.nextString()));
+				break;
+			case "type":
+				releaseType = json.nextString();
+				break;
+			case "onlineOnly":
+				onlineOnly = json.nextBoolean();
+				break;
+			case "border":
+				BorderColor border = BORDERS.get(json.nextString());
+				if (border == null) {
+					supported = false;
+				} else {
+					expansion.borderColor(border);
+				}
+				break;
+			case "block":
+				expansion.blockName(strings.intern(json.nextString()));
+				break;
+			case "booster":
+				json.skipValue();
+				expansion.hasBooster(true);
+				break;
+			case "cards":
+				json.beginArray();
+				while (json.hasNext()) {
+					CardRecord record = parseCard(json);
+					if (record != null) {
+						hasCollectorNumbers &= record.hasCollectorNumber;
+						cards.add(record);
+					}
+				}
+				json.endArray();
+				break;
+			default:
+				json.skipValue();
+			}
+		}
+		json.endObject();
+
+		Release type = RELEASES.get(releaseType);
+		if (!supported || type == null) {
+			return null;
+		}
+		if ("masters".equals(releaseType) && onlineOnly) {
+			type = Release.MASTERS_EDITION;
+		}
+		SimpleExpansion built = expansion
+				.type(type)
+				.isPhysical(!onlineOnly)
+				.hasCollectorNumbers(hasCollectorNumbers && !cards.isEmpty())
+				.build();
+		for (CardRecord record : cards) {
+			record.resolve(built);
+		}
+		return new ParsedExpansion(built, cards);
+	}
+
+	/*
+	 * Returns null if the card cannot be represented.
+	 */
+	private @Nullable CardRecord parseCard(JsonReader json) throws IOException {
+		SimpleCard.Builder card = SimpleCard.builder();
+		CardRecord record = new CardRecord(card);
+		boolean supported = true;
+		Set<Color> colors = EnumSet.noneOf(Color.class);
+		Set<Type> types = EnumSet.noneOf(Type.class);
+		ManaCost manaCost = ManaCost.EMPTY;
+		Expression power = null;
+		Expression toughness = null;
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if (json.peek() == JsonReader.Token.NULL) {
+				json.nextNull();
+				continue;
+			}
+			switch (name) {
+			case "name":
+				record.name = json.nextString();
+				card.name(record.name);
+				break;
+			case "names":
+				record.names = readStrings(json, strings);
+				break;
+			case "layout":
+				String layout = json.nextString();
+				record.layout = LAYOUTS.get(layout);
+				supported &= !UNSUPPORTED_LAYOUTS.contains(layout);
+				break;
+			case "manaCost":
+				try {
+					// parse returns canonical instances
+					manaCost = ManaCost.parse(json.nextString());
+				} catch (IllegalArgumentException e) {
+					supported = false;
+				}
+				card.manaCost(manaCost);
+				break;
+			case "colors":
+				for (String color : readStrings(json, strings)) {
+					supported &= add(colors, COLORS, color);
+				}
+				break;
+			case "colorIdentity":
+				Set<Color> identity = EnumSet.noneOf(Color.class);
+				for (String code : readStrings(json, strings)) {
+					if (code.length() != 1) {
+						supported = false;
+						continue;
+					}
+					try {
+						identity.add(Color.forCode(code.charAt(0)));
+					} catch (IllegalArgumentException e) {
+						supported = false;
+					}
+				}
+				card.colorIdentity(identity);
+				break;
+			case "supertypes":
+				Set<Supertype> supertypes = EnumSet.noneOf(Supertype.class);
+				for (String supertype : readStrings(json, strings)) {
+					supported &= add(supertypes, SUPERTYPES, supertype);
+				}
+				card.supertypes(supertypes);
+				break;
+			case "types":
+				for (String type : readStrings(json, strings)) {
+					supported &= add(types, TYPES, type);
+				}
+				break;
+			case "subtypes":
+				card.subtypes(readStrings(json, Flyweights.SUBTYPES));
+				break;
+			case "text":
+				card.text(json.nextString());
+				break;
+			case "power":
+				power = Expression.of(json.nextString());
+				break;
+			case "toughness":
+				toughness = Expression.of(json.nextString());
+				break;
+			case "loyalty":
+				card.loyalty(json.nextInt());
+				break;
+			case "rarity":
+				record.rarity = RARITIES.get(json.nextString());
+				supported &= record.rarity != null;
+				break;
+			case "flavor":
+				record.flavorText = json.nextString();
+				break;
+			case "artist":
+				record.artist = Flyweights.ARTISTS.intern(json.nextString());
+				break;
+			case "number":
+				try {
+					record.collectorNumber = CollectorNumber.parse(json.nextString());
+					record.hasCollectorNumber = true;
+				} catch (IllegalArgumentException e) {
+					// treat as missing
+				}
+				break;
+			case "watermark":
+				record.watermark = Flyweights.WATERMARKS.intern(json.nextString());
+				break;
+			case "timeshifted":
+				record.isTimeshifted = json.nextBoolean();
+				break;
+			case "starter":
+				record.starterOnly = json.nextBoolean();
+				break;
+			default:
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		// checked here, as the card is not built until every expansion is read
+		if (!supported || record.name == null || record.rarity == null
+				|| types.isEmpty() || (power == null) != (toughness == null)) {
+			return null;
+		}
+		card.types(types).power(power).toughness(toughness);
+		if (!colors.equals(manaCost.colors())) {
+			card.colorIndicator(colors);
+		}
+		return record;
+	}
+
+	private static List<String> readStrings(JsonReader json,
+			Interner<String> interner) throws IOException {
+		List<String> result = new ArrayList<>();
+		json.beginArray();
+		while (json.hasNext()) {
+			result.add(interner.intern(json.nextString()));
+		}
+		json.endArray();
+		return result;
+	}
+
+	private static <E> boolean add(Set<E> set, Map<String, E> byName, String name) {
+		E value = byName.get(name);
+		if (value == null) {
+			return false;
+		}
+		set.add(value);
+		return true;
+	}
+
+	private static final class ParsedExpansion {
+		final SimpleExpansion expansion;
+		final List<CardRecord> cards;
+
+		ParsedExpansion(SimpleExpansion expansion, List<CardRecord> cards) {
+			this.expansion = expansion;
+			this.cards = cards;
+		}
+	}
+
+	/*
+	 * A card as it appears in one expansion. The printing is created once the
+	 * expansion is known.
+	 */
+	private static final class CardRecord {
+		final SimpleCard.Builder card;
+		String name;
+		List<String> names = ImmutableList.of();
+		Layout layout;
+		Rarity rarity;
+		String flavorText = "";
+		String artist = "";
+		CollectorNumber collectorNumber;
+		boolean hasCollectorNumber;
+		String watermark;
+		boolean isTimeshifted;
+		boolean starterOnly;
+		SimplePrinting.Builder printing;
+
+		CardRecord(SimpleCard.Builder card) {
+			this.card = card;
+		}
+
+		void resolve(SimpleExpansion expansion) {
+			printing = SimplePrinting.builder(expansion, rarity)
+					.flavorText(flavorText)
+					.artist(artist)
+					.collectorNumber(collectorNumber)
+					.watermark(watermark)
+					.isTimeshifted(isTimeshifted)
+					.starterOnly(starterOnly);
+		}
+	}
+
+}
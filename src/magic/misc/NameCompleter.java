@@ -0,0 +1,384 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A prefix index over card names for autocompletion. Names are
+ * {@link Folding folded}, so queries ignore case and diacritics.
+ * <p>
+ * {@link #complete} finds names that begin with a prefix, and
+ * {@link #completeTokens} finds names in which every word of the query begins
+ * some word of the name, so {@code "ang wra"} finds
+ * {@code "Akroma, Angel of Wrath"}. A word is a run of letters, digits and
+ * apostrophes.
+ * <p>
+ * The folded names are stored in a single {@code char} array, alongside two
+ * sorted arrays of offsets into it: one of the start of every name, and one of
+ * the start of every word. A prefix query is a binary search for the range of
+ * offsets whose text begins with the prefix, followed by a top-<i>k</i>
+ * selection within that range. Besides its result, a query allocates only a
+ * folded copy of itself, the bounds of its words and a heap of at most
+ * <i>k</i> candidates, none of which grow with the number of names.
+ * <p>
+ * Completions are ordered by an optional weight, highest first, and then by
+ * folded name.
+ */
+public final class NameCompleter {
+
+	/**
+	 * A weight that favors cards with more printings.
+	 */
+	public static final Function<Card, Integer> PRINTING_COUNT =
+			new Function<Card, Integer>() {
+				@Override public Integer apply(Card input) {
+					return input.printings().size();
+				}
+			};
+
+	private static final char END = '\0';
+
+	private final ImmutableList<Card> cards;
+	private final char[] text;
+	private final int[] nameStarts;
+	private final int[] names;
+	private final int[] nameCards;
+	private final int[] words;
+	private final int[] wordCards;
+	private final long[] ranks;
+	private final boolean weighted;
+
+	private NameCompleter(ImmutableList<Card> cards,
+			@Nullable Function<? super Card, Integer> weight) {
+		this.cards = cards;
+		int size = cards.size();
+		this.nameStarts = new int[size + 1];
+		StringBuilder builder = new StringBuilder();
+		List<Integer> wordList = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			nameStarts[i] = builder.length();
+			builder.append(Folding.fold(cards.get(i).name())).append(END);
+			for (int p = nameStarts[i]; p < builder.length() - 1; p++) {
+				if (isWordChar(builder.charAt(p))
+						&& (p == nameStarts[i] || !isWordChar(builder.charAt(p - 1)))) {
+					wordList.add(p);
+				}
+			}
+		}
+		nameStarts[size] = builder.length();
+		this.text = builder.toString().toCharArray();
+
+		this.names = sortedOffsets(Arrays.copyOf(nameStarts, size));
+		this.words = sortedOffsets(toArray(wordList));
+		this.wordCards = new int[words.length];
+		for (int i = 0; i < words.length; i++) {
+			wordCards[i] = cardAt(words[i]);
+		}
+
+		// sort key of each ordinal: inverted weight in the high half, name rank in
+		// the low half
+		this.weighted = weight != null;
+		this.ranks = new long[size];
+		this.nameCards = new int[size];
+		for (int rank = 0; rank < size; rank++) {
+			int card = cardAt(names[rank]);
+			int w = weight == null ? 0 : weight.apply(cards.get(card));
+			ranks[card] = (~(w ^ Integer.MIN_VALUE) & 0xFFFFFFFFL) << 32 | rank;
+			nameCards[rank] = card;
+		}
+	}
+
+	/**
+	 * Returns an index of the cards in the given database, ordering
+	 * completions by name.
+	 */
+	public static NameCompleter of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns an index of the given cards, ordering completions by name.
+	 */
+	public static NameCompleter of(Collection<? extends Card> cards) {
+		return new NameCompleter(ImmutableList.copyOf(cards), null);
+	}
+
+	/**
+	 * Returns an index of the given cards, ordering completions by the given
+	 * weight, highest first, and then by name.
+	 *
+	 * @see #PRINTING_COUNT
+	 */
+	public static NameCompleter of(Collection<? extends Card> cards,
+			Function<? super Card, Integer> weight) {
+		return new NameCompleter(ImmutableList.copyOf(cards), weight);
+	}
+
+	/**
+	 * Returns the indexed cards, in the order in which they were given.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Returns up to {@code limit} cards whose names begin with the given
+	 * prefix, ignoring case and diacritics.
+	 */
+	public ImmutableList<Card> complete(String prefix, int limit) {
+		char[] query = Folding.fold(prefix).toCharArray();
+		int low = lowerBound(names, query, 0);
+		int high = upperBound(names, query, low);
+		if (!weighted) {
+			// the range is already in name order
+			high = Math.min(high, low + Math.max(limit, 0));
+			ImmutableList.Builder<Card> result = ImmutableList.builder();
+			for (int i = low; i < high; i++) {
+				result.add(cards.get(nameCards[i]));
+			}
+			return result.build();
+		}
+		TopK top = new TopK(limit);
+		for (int i = low; i < high; i++) {
+			top.offer(ranks[nameCards[i]]);
+		}
+		return top.cards();
+	}
+
+	/**
+	 * Returns up to {@code limit} cards in whose names every word of the query
+	 * is the prefix of a word, ignoring case and diacritics. Query words may
+	 * match in any order. If the query has no words, returns the same result as
+	 * {@link #complete complete("", limit)}.
+	 */
+	public ImmutableList<Card> completeTokens(String query, int limit) {
+		char[] folded = Folding.fold(query).toCharArray();
+		int[] tokens = tokens(folded);
+		if (tokens.length == 0) {
+			return complete("", limit);
+		}
+		// search by the longest word, which should have the narrowest range
+		int longest = 0;
+		for (int t = 2; t < tokens.length; t += 2) {
+			if (tokens[t + 1] - tokens[t] > tokens[longest + 1] - tokens[longest]) {
+				longest = t;
+			}
+		}
+		char[] key = Arrays.copyOfRange(folded, tokens[longest], tokens[longest + 1]);
+		int low = lowerBound(words, key, 0);
+		int high = upperBound(words, key, low);
+		TopK top = new TopK(limit);
+		for (int i = low; i < high; i++) {
+			int card = wordCards[i];
+			if (firstWordWithPrefix(card, folded, tokens[longest], tokens[longest + 1]) == words[i]
+					&& allWordsMatch(card, folded, tokens)) {
+				top.offer(ranks[card]);
+			}
+		}
+		return top.cards();
+	}
+
+	/*
+	 * Returns the offset of the first word of the card's name that begins with
+	 * query[from, to), so that a card is only counted once per query.
+	 */
+	private int firstWordWithPrefix(int card, char[] query, int from, int to) {
+		int end = nameStarts[card + 1] - 1;
+		for (int p = nameStarts[card]; p < end; p++) {
+			if (isWordChar(text[p]) && (p == nameStarts[card] || !isWordChar(text[p - 1]))
+					&& startsWith(p, query, from, to)) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	private boolean allWordsMatch(int card, char[] query, int[] tokens) {
+		for (int t = 0; t < tokens.length; t += 2) {
+			if (firstWordWithPrefix(card, query, tokens[t], tokens[t + 1]) == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWith(int offset, char[] query, int from, int to) {
+		for (int i = from; i < to; i++, offset++) {
+			if (text[offset] != query[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Compares the text at offset, truncated to the length of the query, to
+	 * the query.
+	 */
+	private int comparePrefix(int offset, char[] query) {
+		for (int i = 0; i < query.length; i++, offset++) {
+			char c = text[offset];
+			if (c != query[i]) {
+				return c < query[i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	private int lowerBound(int[] offsets, char[] query, int from) {
+		int low = from;
+		int high = offsets.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(offsets[mid], query) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int upperBound(int[] offsets, char[] query, int from) {
+		int low = from;
+		int high = offsets.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(offsets[mid], query) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/*
+	 * Returns the ordinal of the card whose name contains the given offset.
+	 */
+	private int cardAt(int offset) {
+		int index = Arrays.binarySearch(nameStarts, offset);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	private int[] sortedOffsets(int[] offsets) {
+		Integer[] boxed = new Integer[offsets.length];
+		for (int i = 0; i < offsets.length; i++) {
+			boxed[i] = offsets[i];
+		}
+		Arrays.sort(boxed, new Comparator<Integer>() {
+			@Override public int compare(Integer o1, Integer o2) {
+				int a = o1;
+				int b = o2;
+				while (text[a] == text[b] && text[a] != END) {
+					a++;
+					b++;
+				}
+				return text[a] != text[b]
+						? Character.compare(text[a], text[b])
+						: Integer.compare(o1, o2);
+			}
+		});
+		int[] result = new int[boxed.length];
+		for (int i = 0; i < boxed.length; i++) {
+			result[i] = boxed[i];
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the [start, end) pairs of the words in the query.
+	 */
+	private static int[] tokens(char[] query) {
+		int[] result = new int[query.length + 1];
+		int count = 0;
+		for (int i = 0; i < query.length; i++) {
+			if (isWordChar(query[i]) && (i == 0 || !isWordChar(query[i - 1]))) {
+				result[count++] = i;
+			} else if (!isWordChar(query[i]) && i > 0 && isWordChar(query[i - 1])) {
+				result[count++] = i;
+			}
+		}
+		if (count % 2 == 1) {
+			result[count++] = query.length;
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '\'';
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+
+	/*
+	 * Keeps the smallest sort keys seen, in a binary max-heap.
+	 */
+	private final class TopK {
+
+		private final long[] heap;
+		private int size;
+
+		TopK(int limit) {
+			this.heap = new long[Math.max(limit, 0)];
+		}
+
+		void offer(long key) {
+			if (size < heap.length) {
+				int i = size++;
+				while (i > 0 && heap[(i - 1) / 2] < key) {
+					heap[i] = heap[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				heap[i] = key;
+				return;
+			}
+			if (size == 0 || key >= heap[0]) {
+				return;
+			}
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && heap[child + 1] > heap[child]) {
+					child++;
+				}
+				if (heap[child] <= key) {
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = key;
+		}
+
+		ImmutableList<Card> cards() {
+			long[] sorted = Arrays.copyOf(heap, size);
+			Arrays.sort(sorted);
+			ImmutableList.Builder<Card> result = ImmutableList.builder();
+			for (long key : sorted) {
+				result.add(cards.get(nameCards[(int) key]));
+			}
+			return result.build();
+		}
+	}
+
+}
@@ -0,0 +1,381 @@
+package magic.misc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import magic.Card;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Finds which of many phrases occur in a text, scanning the text once no
+ * matter how many phrases there are. Phrases and text are compared after
+ * {@link Folding folding}, so matching ignores case and diacritics.
+ * <p>
+ * The phrases are compiled into an Aho-Corasick automaton: a trie of the
+ * phrases, in which every state also has a transition for every character,
+ * leading to the state for the longest phrase prefix that ends there. Scanning
+ * a text is then one table lookup per character. Only the characters that
+ * occur in the phrases have their own column in the table; all others lead
+ * back to the start.
+ * <p>
+ * Each match also records whether it is in reminder text, that is, whether
+ * it ends inside parentheses (see {@link ReminderText}). The
+ * {@code NotReminder} results ignore such matches. For ASCII phrases and text
+ * whose parentheses are balanced, they agree with
+ * {@link Cards#textContainsNotReminder(String)} for every phrase that does not
+ * itself end with a parenthesis; other text may differ, as that method
+ * neither ignores diacritics nor maps typographic quotes and dashes.
+ */
+public final class PhraseMatcher {
+
+	// cards per task, below which a scan is not split further
+	private static final int SEQUENTIAL_CARDS = 512;
+
+	private final ImmutableList<String> phrases;
+	// column of each character, or 0 for characters in no phrase
+	private final char[] columns;
+	private final int width;
+	// transitions, indexed by state * width + column
+	private final int[] transitions;
+	// phrases ending at each state, or null for none
+	private final int[][] outputs;
+
+	private PhraseMatcher(ImmutableList<String> phrases) {
+		this.phrases = phrases;
+		this.columns = new char[Character.MAX_VALUE + 1];
+		List<String> folded = new ArrayList<>(phrases.size());
+		int width = 1;
+		for (String phrase : phrases) {
+			String fold = Folding.fold(phrase);
+			checkArgument(!fold.isEmpty(), "empty phrase");
+			folded.add(fold);
+			for (int i = 0; i < fold.length(); i++) {
+				char c = fold.charAt(i);
+				if (columns[c] == 0) {
+					columns[c] = (char) width++;
+				}
+			}
+		}
+		this.width = width;
+
+		// the trie, with -1 for missing transitions
+		int[] trie = new int[width * 16];
+		Arrays.fill(trie, -1);
+		int states = 1;
+		Map<Integer, List<Integer>> ending = new HashMap<>();
+		for (int p = 0; p < folded.size(); p++) {
+			String fold = folded.get(p);
+			int state = 0;
+			for (int i = 0; i < fold.length(); i++) {
+				int index = state * width + columns[fold.charAt(i)];
+				if (trie[index] == -1) {
+					if ((states + 1) * width > trie.length) {
+						int length = trie.length;
+						trie = Arrays.copyOf(trie, length * 2);
+						Arrays.fill(trie, length, trie.length, -1);
+					}
+					trie[index] = states++;
+				}
+				state = trie[index];
+			}
+			List<Integer> list = ending.get(state);
+			if (list == null) {
+				list = new ArrayList<>();
+				ending.put(state, list);
+			}
+			list.add(p);
+		}
+
+		// breadth-first, so that the failure state of every state is done
+		// before the state itself
+		this.transitions = Arrays.copyOf(trie, states * width);
+		this.outputs = new int[states][];
+		int[] failure = new int[states];
+		int[] queue = new int[states];
+		int head = 0;
+		int tail = 0;
+		for (int column = 0; column < width; column++) {
+			int next = transitions[column];
+			if (next == -1) {
+				transitions[column] = 0;
+			} else {
+				queue[tail++] = next;
+			}
+		}
+		while (head < tail) {
+			int state = queue[head++];
+			List<Integer> own = ending.get(state);
+			int[] inherited = outputs[failure[state]];
+			outputs[state] = concat(own, inherited);
+			for (int column = 0; column < width; column++) {
+				int index = state * width + column;
+				int fallback = transitions[failure[state] * width + column];
+				int next = transitions[index];
+				if (next == -1) {
+					transitions[index] = fallback;
+				} else {
+					failure[next] = fallback;
+					queue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a matcher for the given phrases, whose indices in the results
+	 * are their positions in iteration order.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a phrase is empty after folding
+	 */
+	public static PhraseMatcher of(Iterable<String> phrases) {
+		return new PhraseMatcher(ImmutableList.copyOf(phrases));
+	}
+
+	/**
+	 * Returns a matcher for the given phrases, whose indices in the results
+	 * are their positions.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a phrase is empty after folding
+	 */
+	public static PhraseMatcher of(String... phrases) {
+		return new PhraseMatcher(ImmutableList.copyOf(phrases));
+	}
+
+	private static int[] concat(List<Integer> own, int[] inherited) {
+		if (own == null) {
+			return inherited;
+		}
+		int size = own.size();
+		int[] result = new int[size + (inherited != null ? inherited.length : 0)];
+		for (int i = 0; i < size; i++) {
+			result[i] = own.get(i);
+		}
+		if (inherited != null) {
+			System.arraycopy(inherited, 0, result, size, inherited.length);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the phrases, in index order.
+	 */
+	public ImmutableList<String> phrases() {
+		return phrases;
+	}
+
+	/**
+	 * Returns the indices of the phrases that occur in the given text.
+	 */
+	public BitSet find(String text) {
+		long[] all = new long[words()];
+		scan(text, all, new long[all.length], 0);
+		return BitSet.valueOf(all);
+	}
+
+	/**
+	 * Returns the indices of the phrases that occur in the given text outside
+	 * reminder text.
+	 */
+	public BitSet findNotReminder(String text) {
+		long[] notReminder = new long[words()];
+		scan(text, new long[notReminder.length], notReminder, 0);
+		return BitSet.valueOf(notReminder);
+	}
+
+	/**
+	 * Matches the text of every card in the given database.
+	 */
+	public Table matchAll(Database database) {
+		return matchAll(database.cards());
+	}
+
+	/**
+	 * Matches the text of each of the given cards, which keep their iteration
+	 * order as ordinals.
+	 */
+	public Table matchAll(Collection<? extends Card> cards) {
+		Table table = new Table(ImmutableList.<Card> copyOf(cards));
+		new Scan(table, 0, table.cards.size()).compute();
+		return table;
+	}
+
+	/**
+	 * Same as {@link #matchAll(Collection)}, scanning ranges of cards in
+	 * parallel on the given pool.
+	 */
+	public Table matchAll(Collection<? extends Card> cards, ForkJoinPool pool) {
+		Table table = new Table(ImmutableList.<Card> copyOf(cards));
+		pool.invoke(new Scan(table, 0, table.cards.size()));
+		return table;
+	}
+
+	private int words() {
+		return (phrases.size() + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/*
+	 * Sets the bit of every phrase in the text in all, and of every phrase
+	 * outside reminder text in notReminder, starting at the given word.
+	 */
+	private void scan(String text, long[] all, long[] notReminder, int offset) {
+		int[] spans = text.indexOf('(') != -1 ? ReminderText.spans(text) : null;
+		int span = 0;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			boolean reminder = false;
+			if (spans != null) {
+				while (span < spans.length && spans[span + 1] <= i) {
+					span += 2;
+				}
+				reminder = span < spans.length && spans[span] <= i;
+			}
+			int folded = Folding.expand(text.charAt(i));
+			state = transitions[state * width + columns[folded & 0xFFFF]];
+			emit(state, reminder, all, notReminder, offset);
+			if (folded >>> 16 != 0) {
+				state = transitions[state * width + columns[folded >>> 16]];
+				emit(state, reminder, all, notReminder, offset);
+			}
+		}
+	}
+
+	private void emit(int state, boolean reminder, long[] all,
+			long[] notReminder, int offset) {
+		int[] output = outputs[state];
+		if (output == null) {
+			return;
+		}
+		for (int phrase : output) {
+			long bit = 1L << phrase;
+			int word = offset + phrase / Long.SIZE;
+			all[word] |= bit;
+			if (!reminder) {
+				notReminder[word] |= bit;
+			}
+		}
+	}
+
+	/**
+	 * The phrases that occur in the text of each of a collection of cards,
+	 * indexed by the card's ordinal (its position in {@link #cards()}).
+	 */
+	public final class Table {
+
+		private final ImmutableList<Card> cards;
+		// the bits of card i are words * i to words * (i + 1) - 1
+		private final long[] all;
+		private final long[] notReminder;
+
+		private Table(ImmutableList<Card> cards) {
+			this.cards = cards;
+			this.all = new long[cards.size() * words()];
+			this.notReminder = new long[all.length];
+		}
+
+		/**
+		 * Returns the cards, in ordinal order.
+		 */
+		public ImmutableList<Card> cards() {
+			return cards;
+		}
+
+		/**
+		 * Returns the phrases, in index order.
+		 */
+		public ImmutableList<String> phrases() {
+			return phrases;
+		}
+
+		/**
+		 * Returns the indices of the phrases that occur in the text of the
+		 * card with the given ordinal.
+		 */
+		public BitSet matches(int ordinal) {
+			return bits(all, ordinal);
+		}
+
+		/**
+		 * Returns the indices of the phrases that occur outside reminder text
+		 * in the text of the card with the given ordinal.
+		 */
+		public BitSet matchesNotReminder(int ordinal) {
+			return bits(notReminder, ordinal);
+		}
+
+		/**
+		 * Returns whether the phrase with the given index occurs in the text
+		 * of the card with the given ordinal, ignoring reminder text if
+		 * {@code includeReminder} is {@code false}.
+		 */
+		public boolean matches(int ordinal, int phrase, boolean includeReminder) {
+			long[] bits = includeReminder ? all : notReminder;
+			return (bits[ordinal * words() + phrase / Long.SIZE] & 1L << phrase) != 0;
+		}
+
+		/**
+		 * Returns the ordinals of the cards whose text contains the phrase
+		 * with the given index, ignoring reminder text if
+		 * {@code includeReminder} is {@code false}.
+		 */
+		public BitSet ordinals(int phrase, boolean includeReminder) {
+			BitSet result = new BitSet(cards.size());
+			for (int i = 0; i < cards.size(); i++) {
+				if (matches(i, phrase, includeReminder)) {
+					result.set(i);
+				}
+			}
+			return result;
+		}
+
+		private BitSet bits(long[] bits, int ordinal) {
+			int words = words();
+			return BitSet.valueOf(
+					Arrays.copyOfRange(bits, ordinal * words, (ordinal + 1) * words));
+		}
+	}
+
+	/*
+	 * Scans the cards in a range of ordinals, splitting the range in half
+	 * until it is small enough. Tasks never share a word of the table.
+	 */
+	private final class Scan extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Table table;
+		private final int from;
+		private final int to;
+
+		Scan(Table table, int from, int to) {
+			this.table = table;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override protected void compute() {
+			if (to - from <= SEQUENTIAL_CARDS) {
+				int words = words();
+				for (int i = from; i < to; i++) {
+					scan(table.cards.get(i).text(), table.all, table.notReminder,
+							i * words);
+				}
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Scan(table, from, mid), new Scan(table, mid, to));
+			}
+		}
+	}
+
+}
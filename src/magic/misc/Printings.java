@@ -0,0 +1,149 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import magic.Card;
+import magic.CollectorNumber;
+import magic.Expansion;
+import magic.Printing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+/**
+ * Sorts large numbers of {@link Printing}s without comparing printings.
+ * <p>
+ * Each printing is given three non-negative {@code int} keys: the rank of its
+ * expansion among the distinct expansions being sorted; its collector
+ * number's {@linkplain CollectorNumber#sortKey() sort key} if the expansion
+ * {@linkplain Expansion#hasCollectorNumbers() has collector numbers}, or else
+ * the rank of its card among the distinct cards; and its variation index. The
+ * printings are then sorted with a stable least-significant-digit radix sort
+ * on those keys, so only the distinct expansions and cards are compared with
+ * each other. The result is in the natural order of printings, with ties
+ * broken by variation index and then by input order. This differs from
+ * {@link Collections#sort(List)} only for printings in an expansion with
+ * collector numbers: their natural order ignores variation index, so that
+ * sort would keep printings with the same collector number in input order.
+ */
+public final class Printings {
+
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+
+	private Printings() {}
+
+	/**
+	 * Sorts the given list of printings into their natural order, breaking
+	 * ties by variation index.
+	 */
+	public static <P extends Printing> void sort(List<P> printings) {
+		List<P> sorted = sortedCopy(printings);
+		for (int i = 0; i < sorted.size(); i++) {
+			printings.set(i, sorted.get(i));
+		}
+	}
+
+	/**
+	 * Returns the given printings in their natural order, breaking ties by
+	 * variation index.
+	 */
+	public static <P extends Printing> ImmutableList<P> sortedCopy(
+			Iterable<? extends P> printings) {
+		@SuppressWarnings("unchecked")
+		P[] input = (P[]) Iterables.toArray(printings, Printing.class);
+		int size = input.length;
+		Map<Expansion, Integer> expansions = new IdentityHashMap<>();
+		Map<Card, Integer> cards = new IdentityHashMap<>();
+		for (P printing : input) {
+			expansions.put(printing.expansion(), null);
+			if (!printing.expansion().hasCollectorNumbers()) {
+				cards.put(printing.card(), null);
+			}
+		}
+		rank(expansions);
+		rank(cards);
+
+		int[] expansionKeys = new int[size];
+		int[] numberKeys = new int[size];
+		int[] variationKeys = new int[size];
+		for (int i = 0; i < size; i++) {
+			Printing printing = input[i];
+			expansionKeys[i] = expansions.get(printing.expansion());
+			if (printing.expansion().hasCollectorNumbers()) {
+				CollectorNumber number = printing.collectorNumber();
+				numberKeys[i] = number != null ? number.sortKey() : 0;
+			} else {
+				numberKeys[i] = cards.get(printing.card());
+			}
+			variationKeys[i] = printing.variationIndex();
+		}
+
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		order = radixSort(order, variationKeys);
+		order = radixSort(order, numberKeys);
+		order = radixSort(order, expansionKeys);
+
+		ImmutableList.Builder<P> result = ImmutableList.builder();
+		for (int i : order) {
+			result.add(input[i]);
+		}
+		return result.build();
+	}
+
+	/*
+	 * Replaces each key's value with its rank in the natural order of the
+	 * keys; equal keys have the same rank.
+	 */
+	private static <T extends Comparable<? super T>> void rank(Map<T, Integer> ranks) {
+		List<T> sorted = new ArrayList<>(ranks.keySet());
+		Collections.sort(sorted);
+		int rank = 0;
+		T previous = null;
+		for (T key : sorted) {
+			if (previous != null && previous.compareTo(key) != 0) {
+				rank++;
+			}
+			ranks.put(key, rank);
+			previous = key;
+		}
+	}
+
+	/*
+	 * Returns the indices in order, stably sorted by their non-negative keys.
+	 * Digits above the largest key are skipped.
+	 */
+	private static int[] radixSort(int[] order, int[] keys) {
+		int max = 0;
+		for (int key : keys) {
+			max |= key;
+		}
+		int[] buffer = new int[order.length];
+		int[] counts = new int[RADIX + 1];
+		for (int shift = 0; shift < Integer.SIZE && max >>> shift != 0; shift += RADIX_BITS) {
+			Arrays.fill(counts, 0);
+			for (int i : order) {
+				counts[(keys[i] >>> shift & (RADIX - 1)) + 1]++;
+			}
+			for (int digit = 0; digit < RADIX; digit++) {
+				counts[digit + 1] += counts[digit];
+			}
+			for (int i : order) {
+				buffer[counts[keys[i] >>> shift & (RADIX - 1)]++] = i;
+			}
+			int[] swap = order;
+			order = buffer;
+			buffer = swap;
+		}
+		return order;
+	}
+
+}
@@ -1,13 +1,13 @@
 package magic.misc;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
+import magic.Card;
+
 import com.google.common.annotations.Beta;
-import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 
 /**
@@ -26,50 +26,14 @@ import com.google.common.collect.ImmutableList;
  * is different because lists of keywords normally use commas. When the final
  * keyword has reminder text, however, semicolons are used. In this case, they
  * are converted to commas.</li> </ul>
+ * <p>
+ * Text is processed one line at a time, in a single pass, without regular
+ * expressions. {@link #removeAll(Database)} removes the reminder text of every
+ * card in a database at once.
  */
 @Beta
 public final class ReminderText {
 
-	private static Function<String, String> replacer(
-			String regex,
-			final String replacement) {
-		final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-
-		return new Function<String, String>() {
-			@Override public String apply(@Nullable String input) {
-				return pattern.matcher(input).replaceAll(replacement);
-			}
-		};
-	}
-
-	private static final Collection<Function<String, String>> REPLACERS =
-			ImmutableList.of(
-					// Last keyword reminder text
-					new Function<String, String>() {
-						final Pattern keywords = Pattern.compile(
-								"^((?:.+; )+.+) \\(.+\\)$",
-								Pattern.MULTILINE);
-
-						@Override public String apply(@Nullable String input) {
-							Matcher matcher = keywords.matcher(input);
-							// Should only happen once per card
-							if (matcher.find()) {
-								StringBuilder builder =
-										new StringBuilder(input);
-								builder.replace(matcher.start(), matcher.end(),
-										matcher.group(1).replace(';', ','));
-								return builder.toString();
-							}
-							return input;
-						}
-					},
-					// End of line reminder text
-					replacer("^(.+) \\(.+\\)$", "$1"),
-					// First line reminder text
-					replacer("\\A\\(.+\\)$\\n?", ""),
-					// Middle of line reminder text;
-					replacer("^(.+) \\(.+\\)(.+)$", "$1$2"));
-
 	/**
 	 * Attempts to remove all reminder text from a card.
 	 * 
@@ -80,19 +44,283 @@ public final class ReminderText {
 	 *             if not all reminder text could be removed.
 	 */
 	public static String remove(String text) {
+		String result = tryRemove(text);
+		if (result == null) {
+			throw new IllegalArgumentException(
+					"Failed to remove all reminder text.");
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #remove(String)}, but returns {@code null} if not all
+	 * reminder text could be removed.
+	 */
+	public static @Nullable String tryRemove(String text) {
 		if (text.indexOf('(') == -1) {
 			return text;
 		}
-		String result = text;
-		for (Function<String, String> replacer : REPLACERS) {
-			result = replacer.apply(result);
+		StringBuilder result = new StringBuilder(text.length());
+		StringBuilder line = new StringBuilder();
+		boolean keywordsFound = false;
+		int start = 0;
+		while (start <= text.length()) {
+			int end = start;
+			while (end < text.length() && !isLineTerminator(text.charAt(end))) {
+				end++;
+			}
+			line.setLength(0);
+			line.append(text, start, end);
+			if (!keywordsFound) {
+				keywordsFound = removeFinalKeyword(line);
+			}
+			removeEndOfLine(line);
+			if (start == 0 && isFirstLine(line)) {
+				// the line is removed along with a following newline
+				if (end < text.length() && text.charAt(end) != '\n') {
+					result.append(text.charAt(end));
+				}
+			} else {
+				removeMiddleOfLine(line);
+				result.append(line);
+				if (end < text.length()) {
+					result.append(text.charAt(end));
+				}
+			}
+			start = end + 1;
 		}
-		if (result.contains("(")) {
-			throw new IllegalArgumentException(
-					"Failed to remove all reminder text.");
+		for (int i = 0; i < result.length(); i++) {
+			if (result.charAt(i) == '(') {
+				return null;
+			}
 		}
+		return result.toString();
+	}
 
-		return result;
+	/*
+	 * The characters that end a line, as for the regular expressions that
+	 * first described these forms.
+	 */
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028'
+				|| c == '\u2029';
+	}
+
+	/*
+	 * Returns the index of the last " (" that begins reminder text ending the
+	 * line, with at least one character both before and inside it, or -1.
+	 */
+	private static int endOfLineStart(CharSequence line) {
+		int length = line.length();
+		if (length == 0 || line.charAt(length - 1) != ')') {
+			return -1;
+		}
+		return lastReminderStart(line, length - 4);
+	}
+
+	/*
+	 * Returns the index of the last " (" at an index from 1 to the given
+	 * index, or -1.
+	 */
+	private static int lastReminderStart(CharSequence line, int last) {
+		for (int i = Math.min(last, line.length() - 2); i >= 1; i--) {
+			if (line.charAt(i) == ' ' && line.charAt(i + 1) == '(') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * "Defender; reach (...)": removes the reminder text and turns the
+	 * semicolons before it into commas. Returns whether the line had this
+	 * form.
+	 */
+	private static boolean removeFinalKeyword(StringBuilder line) {
+		int reminder = endOfLineStart(line);
+		boolean found = false;
+		for (int i = 1; i + 2 < reminder; i++) {
+			if (line.charAt(i) == ';' && line.charAt(i + 1) == ' ') {
+				found = true;
+				break;
+			}
+		}
+		if (!found) {
+			return false;
+		}
+		line.setLength(reminder);
+		for (int i = 0; i < reminder; i++) {
+			if (line.charAt(i) == ';') {
+				line.setCharAt(i, ',');
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * "Alloy Golem is the chosen color. (...)"
+	 */
+	private static void removeEndOfLine(StringBuilder line) {
+		int reminder = endOfLineStart(line);
+		if (reminder != -1) {
+			line.setLength(reminder);
+		}
+	}
+
+	/*
+	 * "({G/U} can be paid with either {G} or {U}.)"
+	 */
+	private static boolean isFirstLine(CharSequence line) {
+		int length = line.length();
+		return length >= 3 && line.charAt(0) == '('
+				&& line.charAt(length - 1) == ')';
+	}
+
+	/*
+	 * "... exiled. (...) At the beginning ...": removes from the last " ("
+	 * to the last ")" that is not at the end of the line.
+	 */
+	private static void removeMiddleOfLine(StringBuilder line) {
+		int end = -1;
+		for (int i = line.length() - 2; i >= 0; i--) {
+			if (line.charAt(i) == ')') {
+				end = i;
+				break;
+			}
+		}
+		int reminder = lastReminderStart(line, end - 3);
+		if (reminder != -1) {
+			line.delete(reminder, end + 1);
+		}
+	}
+
+	/**
+	 * Removes the reminder text of every card in the given database.
+	 */
+	public static Table removeAll(Database database) {
+		return removeAll(database.cards());
+	}
+
+	/**
+	 * Removes the reminder text of each of the given cards, which keep their
+	 * iteration order as ordinals.
+	 */
+	public static Table removeAll(Collection<? extends Card> cards) {
+		return new Table(ImmutableList.<Card> copyOf(cards));
+	}
+
+	/**
+	 * The text of a collection of cards without reminder text, computed once.
+	 * Texts that had reminder text are stored one after another in a single
+	 * string; other texts are not copied. Cards whose reminder text could not
+	 * all be removed are reported by {@link #failures()} instead of causing
+	 * an exception.
+	 */
+	public static final class Table {
+
+		private static final int UNCHANGED = -1;
+		private static final int FAILED = -2;
+
+		private final ImmutableList<Card> cards;
+		private final String texts;
+		// the start of each text in texts, or UNCHANGED or FAILED
+		private final int[] starts;
+		private final int[] ends;
+		private final ImmutableList<Card> failures;
+
+		private Table(ImmutableList<Card> cards) {
+			int size = cards.size();
+			this.cards = cards;
+			this.starts = new int[size];
+			this.ends = new int[size];
+			StringBuilder texts = new StringBuilder();
+			ImmutableList.Builder<Card> failures = ImmutableList.builder();
+			for (int i = 0; i < size; i++) {
+				Card card = cards.get(i);
+				String text = card.text();
+				String result = tryRemove(text);
+				if (result == null) {
+					starts[i] = FAILED;
+					failures.add(card);
+				} else if (result == text) {
+					starts[i] = UNCHANGED;
+				} else {
+					starts[i] = texts.length();
+					texts.append(result);
+					ends[i] = texts.length();
+				}
+			}
+			this.texts = texts.toString();
+			this.failures = failures.build();
+		}
+
+		/**
+		 * Returns the cards, in ordinal order.
+		 */
+		public ImmutableList<Card> cards() {
+			return cards;
+		}
+
+		/**
+		 * Returns the text of the card with the given ordinal without
+		 * reminder text, or {@code null} if it is one of the
+		 * {@link #failures()}.
+		 */
+		public @Nullable String text(int ordinal) {
+			int start = starts[ordinal];
+			switch (start) {
+				case UNCHANGED:
+					return cards.get(ordinal).text();
+				case FAILED:
+					return null;
+				default:
+					return texts.substring(start, ends[ordinal]);
+			}
+		}
+
+		/**
+		 * Returns the cards whose reminder text could not all be removed, in
+		 * ordinal order.
+		 */
+		public ImmutableList<Card> failures() {
+			return failures;
+		}
+	}
+
+	/**
+	 * Returns the spans of parenthesized reminder text in the given text as
+	 * pairs of start (inclusive) and end (exclusive) indices, including the
+	 * parentheses. Reminder text never spans lines, so an unclosed parenthesis
+	 * ends at the end of its line.
+	 */
+	static int[] spans(String text) {
+		int[] spans = new int[0];
+		int count = 0;
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '(') {
+				if (depth++ == 0) {
+					start = i;
+				}
+			} else if (depth > 0 && (c == ')' || c == '\n')) {
+				if (c == '\n' || --depth == 0) {
+					if (count == spans.length) {
+						spans = Arrays.copyOf(spans, Math.max(4, count * 2));
+					}
+					spans[count++] = start;
+					spans[count++] = c == '\n' ? i : i + 1;
+					depth = 0;
+				}
+			}
+		}
+		if (depth > 0) {
+			spans = Arrays.copyOf(spans, count + 2);
+			spans[count++] = start;
+			spans[count++] = text.length();
+		}
+		return count == spans.length ? spans : Arrays.copyOf(spans, count);
 	}
 
 	private ReminderText() {}
@@ -0,0 +1,383 @@
+package magic.misc;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.CollectorNumber;
+import magic.Expansion;
+import magic.Link;
+import magic.Printing;
+
+import org.joda.time.LocalDate;
+
+/**
+ * A binary snapshot of a {@link Database}, designed to be memory-mapped. A
+ * snapshot can be written from any {@code Database} and opened as a
+ * {@code Database} whose cards, printings and expansions are read from the
+ * mapped file as they are first used, so opening a snapshot costs almost
+ * nothing regardless of its size.
+ * <p>
+ * All numbers are big-endian. A snapshot is laid out as follows:
+ * <ul>
+ * <li>A header of {@value #HEADER_SIZE} bytes: the magic number
+ * {@code "MTGS"}, the format version, and the count and position of each of
+ * the following sections.</li>
+ * <li>The string table: {@code count + 1} {@code int} offsets, followed by
+ * the UTF-8 bytes of every distinct string. String {@code i} is the bytes
+ * between offsets {@code i} and {@code i + 1}.</li>
+ * <li>The mana cost table: the string index of the representation of every
+ * distinct {@link magic.ManaCost}, so each cost is parsed at most once.</li>
+ * <li>The list table: lists of string indices (subtypes), each stored as its
+ * length followed by its elements.</li>
+ * <li>Fixed-width records for expansions, cards and printings. Records refer
+ * to strings, mana costs, lists and each other by index; sets of colors,
+ * types and supertypes are stored as bit masks of ordinals. The printings of
+ * each card are stored contiguously, in the order of
+ * {@link Card#printings()}.</li>
+ * </ul>
+ * <p>
+ * A missing string or record is stored as {@code -1}, and a missing loyalty as
+ * {@link Integer#MIN_VALUE}.
+ */
+public final class Snapshot {
+
+	static final int MAGIC = 0x4D544753; // "MTGS"
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 64;
+	static final int EXPANSION_SIZE = 24;
+	static final int CARD_SIZE = 48;
+	static final int PRINTING_SIZE = 32;
+
+	// Header fields
+	static final int STRING_COUNT = 8;
+	static final int STRING_POSITION = 12;
+	static final int MANA_COST_COUNT = 16;
+	static final int MANA_COST_POSITION = 20;
+	static final int LIST_POSITION = 24;
+	static final int EXPANSION_COUNT = 28;
+	static final int EXPANSION_POSITION = 32;
+	static final int CARD_COUNT = 36;
+	static final int CARD_POSITION = 40;
+	static final int PRINTING_COUNT = 44;
+	static final int PRINTING_POSITION = 48;
+
+	// Expansion fields
+	static final int EXPANSION_NAME = 0;
+	static final int EXPANSION_CODE = 4;
+	static final int EXPANSION_RELEASE_DATE = 8;
+	static final int EXPANSION_BLOCK = 12;
+	static final int EXPANSION_TYPE = 16;
+	static final int EXPANSION_BORDER = 17;
+	static final int EXPANSION_FLAGS = 18;
+
+	static final int HAS_COLLECTOR_NUMBERS = 1;
+	static final int PHYSICAL = 2;
+	static final int HAS_BOOSTER = 4;
+
+	// Card fields
+	static final int CARD_NAME = 0;
+	static final int CARD_MANA_COST = 4;
+	static final int CARD_COLOR_INDICATOR = 8;
+	static final int CARD_SUPERTYPES = 9;
+	static final int CARD_TYPES = 10;
+	static final int CARD_COLOR_IDENTITY = 12;
+	static final int CARD_LAYOUT = 13;
+	static final int CARD_FLAGS = 14;
+	static final int CARD_SUBTYPES = 16;
+	static final int CARD_TEXT = 20;
+	static final int CARD_POWER = 24;
+	static final int CARD_TOUGHNESS = 28;
+	static final int CARD_LOYALTY = 32;
+	static final int CARD_LINK = 36;
+	static final int CARD_FIRST_PRINTING = 40;
+	static final int CARD_PRINTING_COUNT = 44;
+
+	static final int FIRST_HALF = 1;
+
+	// Printing fields
+	static final int PRINTING_CARD = 0;
+	static final int PRINTING_EXPANSION = 4;
+	static final int PRINTING_FLAVOR_TEXT = 8;
+	static final int PRINTING_ARTIST = 12;
+	static final int PRINTING_COLLECTOR_NUMBER = 16;
+	static final int PRINTING_WATERMARK = 20;
+	static final int PRINTING_VARIATION_INDEX = 24;
+	static final int PRINTING_RARITY = 28;
+	static final int PRINTING_FLAGS = 29;
+
+	static final int STARTER_ONLY = 1;
+	static final int TIMESHIFTED = 2;
+
+	private Snapshot() {}
+
+	/**
+	 * Opens the snapshot at the given path. The file is mapped into memory and
+	 * is not read until the returned database is used.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be mapped, or is not a snapshot of a
+	 *             supported version
+	 */
+	public static Database open(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("not a snapshot: " + path);
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new IOException(String.format(
+					"unsupported snapshot version %d in %s", version, path));
+		}
+		return new SnapshotDatabase(buffer);
+	}
+
+	/**
+	 * Writes a snapshot of the given database to the given path, replacing
+	 * any existing file. Expansions in which cards are printed are included
+	 * even if they are missing from {@link Database#expansions()}.
+	 */
+	public static void write(Database database, Path path) throws IOException {
+		new Writer(database).write(path);
+	}
+
+	/**
+	 * Packs a date into an {@code int} as {@code year << 9 | month << 5 | day}.
+	 */
+	static int packDate(LocalDate date) {
+		return date.getYear() << 9 | date.getMonthOfYear() << 5 | date.getDayOfMonth();
+	}
+
+	static LocalDate unpackDate(int packed) {
+		return new LocalDate(packed >> 9, packed >> 5 & 0xF, packed & 0x1F);
+	}
+
+	private static final class Writer {
+
+		private final List<Expansion> expansions;
+		private final List<Card> cards;
+		private final Map<Expansion, Integer> expansionIndices = new HashMap<>();
+		private final Map<Card, Integer> cardIndices = new HashMap<>();
+		private final Map<String, Integer> strings = new LinkedHashMap<>();
+		private final Map<String, Integer> manaCosts = new LinkedHashMap<>();
+		private final List<Integer> lists = new ArrayList<>();
+
+		Writer(Database database) {
+			Set<Expansion> expansions = new LinkedHashSet<>(database.expansions());
+			for (Card card : database.cards()) {
+				expansions.addAll(card.printings().keySet());
+			}
+			this.expansions = new ArrayList<>(expansions);
+			this.cards = new ArrayList<>(database.cards());
+			for (int i = 0; i < this.expansions.size(); i++) {
+				expansionIndices.put(this.expansions.get(i), i);
+			}
+			for (int i = 0; i < cards.size(); i++) {
+				cardIndices.put(cards.get(i), i);
+			}
+		}
+
+		private int string(@Nullable Object value) {
+			if (value == null) {
+				return -1;
+			}
+			String string = value.toString();
+			Integer index = strings.get(string);
+			if (index == null) {
+				index = strings.size();
+				strings.put(string, index);
+			}
+			return index;
+		}
+
+		private int manaCost(String representation) {
+			Integer index = manaCosts.get(representation);
+			if (index == null) {
+				index = manaCosts.size();
+				manaCosts.put(representation, index);
+				string(representation);
+			}
+			return index;
+		}
+
+		private int list(Set<String> values) {
+			int position = lists.size();
+			lists.add(values.size());
+			for (String value : values) {
+				lists.add(string(value));
+			}
+			return position;
+		}
+
+		void write(Path path) throws IOException {
+			ByteBuffer expansionRecords = ByteBuffer.allocate(
+					expansions.size() * EXPANSION_SIZE);
+			for (Expansion expansion : expansions) {
+				int base = expansionRecords.position();
+				expansionRecords.putInt(base + EXPANSION_NAME, string(expansion.name()));
+				expansionRecords.putInt(base + EXPANSION_CODE, string(expansion.code()));
+				expansionRecords.putInt(base + EXPANSION_RELEASE_DATE,
+						packDate(expansion.releaseDate()));
+				expansionRecords.putInt(base + EXPANSION_BLOCK,
+						string(expansion.blockName()));
+				expansionRecords.put(base + EXPANSION_TYPE,
+						(byte) expansion.type().ordinal());
+				expansionRecords.put(base + EXPANSION_BORDER,
+						(byte) expansion.borderColor().ordinal());
+				expansionRecords.put(base + EXPANSION_FLAGS, (byte) (
+						(expansion.hasCollectorNumbers() ? HAS_COLLECTOR_NUMBERS : 0)
+						| (expansion.isPhysical() ? PHYSICAL : 0)
+						| (expansion.hasBooster() ? HAS_BOOSTER : 0)));
+				expansionRecords.position(base + EXPANSION_SIZE);
+			}
+
+			List<Printing> printings = new ArrayList<>();
+			ByteBuffer cardRecords = ByteBuffer.allocate(cards.size() * CARD_SIZE);
+			for (Card card : cards) {
+				int base = cardRecords.position();
+				cardRecords.putInt(base + CARD_NAME, string(card.name()));
+				cardRecords.putInt(base + CARD_MANA_COST,
+						manaCost(card.manaCost().toString()));
+				cardRecords.put(base + CARD_COLOR_INDICATOR,
+						(byte) CardColumns.mask(card.colorIndicator()));
+				cardRecords.put(base + CARD_SUPERTYPES,
+						(byte) CardColumns.mask(card.supertypes()));
+				cardRecords.putShort(base + CARD_TYPES,
+						(short) CardColumns.mask(card.types()));
+				cardRecords.put(base + CARD_COLOR_IDENTITY,
+						(byte) CardColumns.mask(card.colorIdentity()));
+				Link link = card.link();
+				if (link != null) {
+					Integer linked = cardIndices.get(link.get());
+					if (linked == null) {
+						throw new IllegalArgumentException(String.format(
+								"%s is linked to %s, which is not in the database",
+								card, link.get()));
+					}
+					cardRecords.put(base + CARD_LAYOUT,
+							(byte) (link.layout().ordinal() + 1));
+					cardRecords.put(base + CARD_FLAGS,
+							(byte) (link.isFirstHalf() ? FIRST_HALF : 0));
+					cardRecords.putInt(base + CARD_LINK, linked);
+				} else {
+					cardRecords.putInt(base + CARD_LINK, -1);
+				}
+				cardRecords.putInt(base + CARD_SUBTYPES, list(card.subtypes()));
+				cardRecords.putInt(base + CARD_TEXT, string(card.text()));
+				cardRecords.putInt(base + CARD_POWER, string(card.power()));
+				cardRecords.putInt(base + CARD_TOUGHNESS, string(card.toughness()));
+				cardRecords.putInt(base + CARD_LOYALTY, card.loyalty() != null
+						? card.loyalty()
+						: Integer.MIN_VALUE);
+				cardRecords.putInt(base + CARD_FIRST_PRINTING, printings.size());
+				printings.addAll(card.printings().values());
+				cardRecords.putInt(base + CARD_PRINTING_COUNT,
+						printings.size() - cardRecords.getInt(base + CARD_FIRST_PRINTING));
+				cardRecords.position(base + CARD_SIZE);
+			}
+
+			ByteBuffer printingRecords = ByteBuffer.allocate(
+					printings.size() * PRINTING_SIZE);
+			for (Printing printing : printings) {
+				int base = printingRecords.position();
+				CollectorNumber collectorNumber = printing.collectorNumber();
+				printingRecords.putInt(base + PRINTING_CARD,
+						cardIndices.get(printing.card()));
+				printingRecords.putInt(base + PRINTING_EXPANSION,
+						expansionIndices.get(printing.expansion()));
+				printingRecords.putInt(base + PRINTING_FLAVOR_TEXT,
+						string(printing.flavorText()));
+				printingRecords.putInt(base + PRINTING_ARTIST,
+						string(printing.artist()));
+				printingRecords.putInt(base + PRINTING_COLLECTOR_NUMBER,
+						string(collectorNumber));
+				printingRecords.putInt(base + PRINTING_WATERMARK,
+						string(printing.watermark()));
+				printingRecords.putInt(base + PRINTING_VARIATION_INDEX,
+						printing.variationIndex());
+				printingRecords.put(base + PRINTING_RARITY,
+						(byte) printing.rarity().ordinal());
+				printingRecords.put(base + PRINTING_FLAGS, (byte) (
+						(printing.starterOnly() ? STARTER_ONLY : 0)
+						| (printing.isTimeshifted() ? TIMESHIFTED : 0)));
+				printingRecords.position(base + PRINTING_SIZE);
+			}
+
+			List<byte[]> encoded = new ArrayList<>(strings.size());
+			int stringBytes = 0;
+			for (String string : strings.keySet()) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				encoded.add(bytes);
+				stringBytes += bytes.length;
+			}
+
+			int stringPosition = HEADER_SIZE;
+			int manaCostPosition = stringPosition + (strings.size() + 1) * 4 + stringBytes;
+			int listPosition = manaCostPosition + manaCosts.size() * 4;
+			int expansionPosition = listPosition + lists.size() * 4;
+			int cardPosition = expansionPosition + expansionRecords.capacity();
+			int printingPosition = cardPosition + cardRecords.capacity();
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(path)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(strings.size());
+				out.writeInt(stringPosition);
+				out.writeInt(manaCosts.size());
+				out.writeInt(manaCostPosition);
+				out.writeInt(listPosition);
+				out.writeInt(expansions.size());
+				out.writeInt(expansionPosition);
+				out.writeInt(cards.size());
+				out.writeInt(cardPosition);
+				out.writeInt(printings.size());
+				out.writeInt(printingPosition);
+				while (out.size() < HEADER_SIZE) {
+					out.writeByte(0);
+				}
+
+				int offset = 0;
+				out.writeInt(offset);
+				for (byte[] bytes : encoded) {
+					offset += bytes.length;
+					out.writeInt(offset);
+				}
+				for (byte[] bytes : encoded) {
+					out.write(bytes);
+				}
+				for (String representation : manaCosts.keySet()) {
+					out.writeInt(strings.get(representation));
+				}
+				for (int value : lists) {
+					out.writeInt(value);
+				}
+				out.write(expansionRecords.array());
+				out.write(cardRecords.array());
+				out.write(printingRecords.array());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,512 @@
+package magic.misc;
+
+import static magic.misc.Snapshot.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+import magic.Card;
+import magic.CollectorNumber;
+import magic.Color;
+import magic.Expansion;
+import magic.Expression;
+import magic.Link;
+import magic.ManaCost;
+import magic.Printing;
+import magic.Rarity;
+import magic.Supertype;
+import magic.Type;
+import magic.impl.AbstractCard;
+import magic.impl.AbstractExpansion;
+import magic.impl.AbstractPrinting;
+import magic.impl.SimpleLink;
+
+import org.joda.time.LocalDate;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Sets;
+
+/**
+ * A {@link Database} backed by a memory-mapped {@link Snapshot}. Cards,
+ * printings and expansions are created the first time they are requested and
+ * then reused, so each is unique. Their attributes are read from the mapped
+ * buffer on demand; strings, mana costs, expressions, collector numbers and
+ * sets are decoded once and shared.
+ */
+final class SnapshotDatabase extends Database {
+
+	private static final Function<Card, String> NAME_OF_CARD =
+			new Function<Card, String>() {
+				@Override public String apply(Card input) {
+					return input.name();
+				}
+			};
+
+	private static final Function<Expansion, String> CODE_OF_EXPANSION =
+			new Function<Expansion, String>() {
+				@Override public String apply(Expansion input) {
+					return input.code();
+				}
+			};
+
+	private static final Function<Expansion, String> NAME_OF_EXPANSION =
+			new Function<Expansion, String>() {
+				@Override public String apply(Expansion input) {
+					return input.name();
+				}
+			};
+
+	private static final Color[] COLORS = Color.values();
+	private static final Type[] TYPES = Type.values();
+	private static final Supertype[] SUPERTYPES = Supertype.values();
+	private static final Rarity[] RARITIES = Rarity.values();
+	private static final Expansion.Release[] RELEASES = Expansion.Release.values();
+	private static final Expansion.BorderColor[] BORDER_COLORS =
+			Expansion.BorderColor.values();
+	private static final Link.Layout[] LAYOUTS = Link.Layout.values();
+
+	private final ByteBuffer buffer;
+
+	private final int stringPosition;
+	private final int stringDataPosition;
+	private final int manaCostPosition;
+	private final int listPosition;
+	private final int expansionPosition;
+	private final int cardPosition;
+	private final int printingPosition;
+
+	// Decoded values, filled in on first use. Racing threads may decode the
+	// same value twice, but all of these values are immutable.
+	private final String[] strings;
+	private final ManaCost[] manaCosts;
+	// indexed by the string they are parsed from
+	private final Expression[] expressions;
+	private final CollectorNumber[] collectorNumbers;
+	private final AtomicReferenceArray<Set<Color>> colorSets =
+			new AtomicReferenceArray<>(1 << COLORS.length);
+	private final AtomicReferenceArray<Set<Type>> typeSets =
+			new AtomicReferenceArray<>(1 << TYPES.length);
+	private final AtomicReferenceArray<Set<Supertype>> supertypeSets =
+			new AtomicReferenceArray<>(1 << SUPERTYPES.length);
+
+	private final AtomicReferenceArray<SnapshotExpansion> expansions;
+	private final AtomicReferenceArray<SnapshotCard> cards;
+
+	private final List<Card> cardList;
+	private final List<Expansion> expansionList;
+
+	private final Supplier<FoldedIndex<Card>> cardsByName =
+			Suppliers.memoize(new Supplier<FoldedIndex<Card>>() {
+				@Override public FoldedIndex<Card> get() {
+					return new FoldedIndex<>(cardList, NAME_OF_CARD);
+				}
+			});
+
+	private final Supplier<FoldedIndex<Expansion>> expansionsByCode =
+			Suppliers.memoize(new Supplier<FoldedIndex<Expansion>>() {
+				@Override public FoldedIndex<Expansion> get() {
+					return new FoldedIndex<>(expansionList, CODE_OF_EXPANSION);
+				}
+			});
+
+	private final Supplier<FoldedIndex<Expansion>> expansionsByName =
+			Suppliers.memoize(new Supplier<FoldedIndex<Expansion>>() {
+				@Override public FoldedIndex<Expansion> get() {
+					return new FoldedIndex<>(expansionList, NAME_OF_EXPANSION);
+				}
+			});
+
+	SnapshotDatabase(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.stringPosition = buffer.getInt(STRING_POSITION);
+		this.strings = new String[buffer.getInt(STRING_COUNT)];
+		this.stringDataPosition = stringPosition + (strings.length + 1) * 4;
+		this.expressions = new Expression[strings.length];
+		this.collectorNumbers = new CollectorNumber[strings.length];
+		this.manaCostPosition = buffer.getInt(MANA_COST_POSITION);
+		this.manaCosts = new ManaCost[buffer.getInt(MANA_COST_COUNT)];
+		this.listPosition = buffer.getInt(LIST_POSITION);
+		this.expansionPosition = buffer.getInt(EXPANSION_POSITION);
+		this.expansions = new AtomicReferenceArray<>(buffer.getInt(EXPANSION_COUNT));
+		this.cardPosition = buffer.getInt(CARD_POSITION);
+		this.cards = new AtomicReferenceArray<>(buffer.getInt(CARD_COUNT));
+		this.printingPosition = buffer.getInt(PRINTING_POSITION);
+		this.cardList = new AbstractList<Card>() {
+			@Override public Card get(int index) {
+				return card(index);
+			}
+
+			@Override public int size() {
+				return cards.length();
+			}
+		};
+		this.expansionList = new AbstractList<Expansion>() {
+			@Override public Expansion get(int index) {
+				return expansion(index);
+			}
+
+			@Override public int size() {
+				return expansions.length();
+			}
+		};
+	}
+
+	/**
+	 * Returns a view of all cards, which are created as they are accessed.
+	 */
+	@Override public List<Card> cards() {
+		return cardList;
+	}
+
+	/**
+	 * Returns a view of all expansions, which are created as they are
+	 * accessed.
+	 */
+	@Override public List<Expansion> expansions() {
+		return expansionList;
+	}
+
+	/**
+	 * Returns the card with the given name, ignoring case and diacritics. The
+	 * first call reads the names of all cards.
+	 */
+	@Override public @Nullable Card getCard(String name) {
+		return cardsByName.get().get(name);
+	}
+
+	/**
+	 * Returns the expansion with the given code, or if there is none, the
+	 * expansion with the given name, ignoring case in both; returns
+	 * {@code null} if neither exists. The first call reads the codes of all
+	 * expansions, and the first call that falls back to names reads their
+	 * names.
+	 */
+	@Override public @Nullable Expansion getExpansion(String name) {
+		Expansion expansion = expansionsByCode.get().get(name);
+		return expansion != null ? expansion : expansionsByName.get().get(name);
+	}
+
+	private @Nullable String string(int index) {
+		if (index < 0) {
+			return null;
+		}
+		String result = strings[index];
+		if (result == null) {
+			int start = buffer.getInt(stringPosition + index * 4);
+			int end = buffer.getInt(stringPosition + index * 4 + 4);
+			byte[] bytes = new byte[end - start];
+			ByteBuffer view = buffer.duplicate();
+			view.position(stringDataPosition + start);
+			view.get(bytes);
+			result = new String(bytes, StandardCharsets.UTF_8);
+			strings[index] = result;
+		}
+		return result;
+	}
+
+	private ManaCost decodeManaCost(int index) {
+		ManaCost result = manaCosts[index];
+		if (result == null) {
+			// parsed straight from the mapped bytes, without a String
+			int string = buffer.getInt(manaCostPosition + index * 4);
+			int start = buffer.getInt(stringPosition + string * 4);
+			int end = buffer.getInt(stringPosition + string * 4 + 4);
+			ByteBuffer view = buffer.duplicate();
+			view.limit(stringDataPosition + end).position(stringDataPosition + start);
+			result = ManaCost.parse(view);
+			manaCosts[index] = result;
+		}
+		return result;
+	}
+
+	private @Nullable Expression decodeExpression(int index) {
+		if (index < 0) {
+			return null;
+		}
+		Expression result = expressions[index];
+		if (result == null) {
+			result = Expression.of(string(index));
+			expressions[index] = result;
+		}
+		return result;
+	}
+
+	private @Nullable CollectorNumber decodeCollectorNumber(int index) {
+		if (index < 0) {
+			return null;
+		}
+		CollectorNumber result = collectorNumbers[index];
+		if (result == null) {
+			result = CollectorNumber.parse(string(index));
+			collectorNumbers[index] = result;
+		}
+		return result;
+	}
+
+	private Set<Color> colorSet(int mask) {
+		Set<Color> result = colorSets.get(mask);
+		if (result == null) {
+			result = Color.INTERNER.intern(decode(Color.class, COLORS, mask));
+			colorSets.set(mask, result);
+		}
+		return result;
+	}
+
+	private static <E extends Enum<E>> Set<E> enumSet(
+			AtomicReferenceArray<Set<E>> cache, Class<E> type, E[] values, int mask) {
+		Set<E> result = cache.get(mask);
+		if (result == null) {
+			result = Sets.immutableEnumSet(decode(type, values, mask));
+			cache.set(mask, result);
+		}
+		return result;
+	}
+
+	private static <E extends Enum<E>> EnumSet<E> decode(Class<E> type,
+			E[] values, int mask) {
+		EnumSet<E> result = EnumSet.noneOf(type);
+		for (int i = 0; i < values.length; i++) {
+			if ((mask & 1 << i) != 0) {
+				result.add(values[i]);
+			}
+		}
+		return result;
+	}
+
+	SnapshotExpansion expansion(int index) {
+		SnapshotExpansion result = expansions.get(index);
+		if (result == null) {
+			expansions.compareAndSet(index, null, new SnapshotExpansion(index));
+			result = expansions.get(index);
+		}
+		return result;
+	}
+
+	SnapshotCard card(int index) {
+		SnapshotCard result = cards.get(index);
+		if (result == null) {
+			cards.compareAndSet(index, null, new SnapshotCard(index));
+			result = cards.get(index);
+		}
+		return result;
+	}
+
+	private final class SnapshotExpansion extends AbstractExpansion {
+
+		private final int base;
+
+		SnapshotExpansion(int index) {
+			this.base = expansionPosition + index * EXPANSION_SIZE;
+		}
+
+		@Override public String name() {
+			return string(buffer.getInt(base + EXPANSION_NAME));
+		}
+
+		@Override public String code() {
+			return string(buffer.getInt(base + EXPANSION_CODE));
+		}
+
+		@Override public LocalDate releaseDate() {
+			return unpackDate(buffer.getInt(base + EXPANSION_RELEASE_DATE));
+		}
+
+		@Override public Release type() {
+			return RELEASES[buffer.get(base + EXPANSION_TYPE)];
+		}
+
+		@Override public @Nullable String blockName() {
+			return string(buffer.getInt(base + EXPANSION_BLOCK));
+		}
+
+		@Override public BorderColor borderColor() {
+			return BORDER_COLORS[buffer.get(base + EXPANSION_BORDER)];
+		}
+
+		@Override public boolean hasCollectorNumbers() {
+			return (buffer.get(base + EXPANSION_FLAGS) & HAS_COLLECTOR_NUMBERS) != 0;
+		}
+
+		@Override public boolean isPhysical() {
+			return (buffer.get(base + EXPANSION_FLAGS) & PHYSICAL) != 0;
+		}
+
+		@Override public boolean hasBooster() {
+			return (buffer.get(base + EXPANSION_FLAGS) & HAS_BOOSTER) != 0;
+		}
+	}
+
+	private final class SnapshotCard extends AbstractCard {
+
+		private final int base;
+
+		// Created on first use
+		private volatile ImmutableListMultimap<Expansion, SnapshotPrinting> printings;
+		private volatile ImmutableSet<String> subtypes;
+		private volatile Link link;
+
+		SnapshotCard(int index) {
+			this.base = cardPosition + index * CARD_SIZE;
+		}
+
+		@Override public String name() {
+			return string(buffer.getInt(base + CARD_NAME));
+		}
+
+		@Override public ManaCost manaCost() {
+			return decodeManaCost(buffer.getInt(base + CARD_MANA_COST));
+		}
+
+		@Override public Set<Color> colorIndicator() {
+			return colorSet(buffer.get(base + CARD_COLOR_INDICATOR));
+		}
+
+		@Override public Set<Supertype> supertypes() {
+			return enumSet(supertypeSets, Supertype.class, SUPERTYPES,
+					buffer.get(base + CARD_SUPERTYPES));
+		}
+
+		@Override public Set<Type> types() {
+			return enumSet(typeSets, Type.class, TYPES,
+					buffer.getShort(base + CARD_TYPES));
+		}
+
+		@Override public Set<String> subtypes() {
+			ImmutableSet<String> result = subtypes;
+			if (result == null) {
+				int position = listPosition + buffer.getInt(base + CARD_SUBTYPES) * 4;
+				int size = buffer.getInt(position);
+				ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+				for (int i = 1; i <= size; i++) {
+					builder.add(string(buffer.getInt(position + i * 4)));
+				}
+				result = builder.build();
+				subtypes = result;
+			}
+			return result;
+		}
+
+		@Override public String text() {
+			return string(buffer.getInt(base + CARD_TEXT));
+		}
+
+		@Override public @Nullable Expression power() {
+			return decodeExpression(buffer.getInt(base + CARD_POWER));
+		}
+
+		@Override public @Nullable Expression toughness() {
+			return decodeExpression(buffer.getInt(base + CARD_TOUGHNESS));
+		}
+
+		@Override public @Nullable Integer loyalty() {
+			int loyalty = buffer.getInt(base + CARD_LOYALTY);
+			return loyalty != Integer.MIN_VALUE ? loyalty : null;
+		}
+
+		@Override public @Nullable Link link() {
+			Link result = link;
+			if (result == null) {
+				int linked = buffer.getInt(base + CARD_LINK);
+				if (linked < 0) {
+					return null;
+				}
+				result = SimpleLink.create(
+						card(linked),
+						LAYOUTS[buffer.get(base + CARD_LAYOUT) - 1],
+						(buffer.get(base + CARD_FLAGS) & FIRST_HALF) != 0);
+				link = result;
+			}
+			return result;
+		}
+
+		@Override public Set<Color> colorIdentity() {
+			return colorSet(buffer.get(base + CARD_COLOR_IDENTITY));
+		}
+
+		@Override public ListMultimap<Expansion, SnapshotPrinting> printings() {
+			ImmutableListMultimap<Expansion, SnapshotPrinting> result = printings;
+			if (result == null) {
+				synchronized (this) {
+					result = printings;
+					if (result == null) {
+						int first = buffer.getInt(base + CARD_FIRST_PRINTING);
+						int count = buffer.getInt(base + CARD_PRINTING_COUNT);
+						ImmutableListMultimap.Builder<Expansion, SnapshotPrinting> builder =
+								ImmutableListMultimap.builder();
+						for (int i = first; i < first + count; i++) {
+							SnapshotPrinting printing = new SnapshotPrinting(this, i);
+							builder.put(printing.expansion(), printing);
+						}
+						result = builder.build();
+						printings = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	private final class SnapshotPrinting extends AbstractPrinting {
+
+		private final SnapshotCard card;
+		private final int base;
+
+		SnapshotPrinting(SnapshotCard card, int index) {
+			this.card = card;
+			this.base = printingPosition + index * PRINTING_SIZE;
+		}
+
+		@Override public Card card() {
+			return card;
+		}
+
+		@Override public Expansion expansion() {
+			return SnapshotDatabase.this.expansion(buffer.getInt(base + PRINTING_EXPANSION));
+		}
+
+		@Override public Rarity rarity() {
+			return RARITIES[buffer.get(base + PRINTING_RARITY)];
+		}
+
+		@Override public String flavorText() {
+			return string(buffer.getInt(base + PRINTING_FLAVOR_TEXT));
+		}
+
+		@Override public String artist() {
+			return string(buffer.getInt(base + PRINTING_ARTIST));
+		}
+
+		@Override public @Nullable CollectorNumber collectorNumber() {
+			return decodeCollectorNumber(buffer.getInt(base + PRINTING_COLLECTOR_NUMBER));
+		}
+
+		@Override public int variationIndex() {
+			return buffer.getInt(base + PRINTING_VARIATION_INDEX);
+		}
+
+		@Override public boolean starterOnly() {
+			return (buffer.get(base + PRINTING_FLAGS) & STARTER_ONLY) != 0;
+		}
+
+		@Override public @Nullable String watermark() {
+			return string(buffer.getInt(base + PRINTING_WATERMARK));
+		}
+
+		@Override public boolean isTimeshifted() {
+			return (buffer.get(base + PRINTING_FLAGS) & TIMESHIFTED) != 0;
+		}
+	}
+
+}
@@ -0,0 +1,371 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import magic.Card;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An inverted index over the text of a collection of cards, with ranked word
+ * and phrase queries.
+ * <p>
+ * Text is split into words of letters, digits and apostrophes, and mana
+ * symbols such as <code>{T}</code> are kept as single words; everything else
+ * separates words. Words are {@link Folding folded}, so queries ignore case.
+ * Each occurrence of a word records whether it is inside reminder text, that
+ * is, inside parentheses (see {@link ReminderText}), which the
+ * {@code NotReminder} queries ignore.
+ * <p>
+ * Results are ranked with BM25, so shorter texts that mention the query more
+ * often come first. Ties are broken by ordinal (position in {@link #cards()}).
+ */
+public final class TextIndex {
+
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	private final ImmutableList<Card> cards;
+	private final ImmutableMap<String, Postings> terms;
+	private final int[] lengths;
+	private final double averageLength;
+
+	/**
+	 * The occurrences of a single term. For the {@code i}th card containing
+	 * the term, {@code cards[i]} is its ordinal, and its positions are
+	 * {@code positions[offsets[i]]} to {@code positions[offsets[i + 1] - 1]}.
+	 * A position is stored as its word index shifted left by one, with the
+	 * low bit set if the word is inside reminder text.
+	 */
+	private static final class Postings {
+
+		final int[] cards;
+		final int[] offsets;
+		final int[] positions;
+
+		Postings(int[] cards, int[] offsets, int[] positions) {
+			this.cards = cards;
+			this.offsets = offsets;
+			this.positions = positions;
+		}
+
+		int indexOf(int card) {
+			return Arrays.binarySearch(cards, card);
+		}
+
+		/**
+		 * Returns whether the card at {@code index} has the term at the given
+		 * word index, in reminder text only if {@code reminder} is true.
+		 */
+		boolean has(int index, int word, boolean reminder) {
+			int from = offsets[index];
+			int to = offsets[index + 1];
+			if (Arrays.binarySearch(positions, from, to, word << 1) >= 0) {
+				return true;
+			}
+			return reminder
+					&& Arrays.binarySearch(positions, from, to, word << 1 | 1) >= 0;
+		}
+	}
+
+	/**
+	 * A growable list of postings for one term, used while building.
+	 */
+	private static final class PostingsBuilder {
+
+		int[] cards = new int[4];
+		int[] offsets = new int[5];
+		int[] positions = new int[4];
+		int cardCount = 0;
+		int positionCount = 0;
+
+		void add(int card, int position) {
+			if (cardCount == 0 || cards[cardCount - 1] != card) {
+				if (cardCount == cards.length) {
+					cards = Arrays.copyOf(cards, cardCount * 2);
+					offsets = Arrays.copyOf(offsets, cardCount * 2 + 1);
+				}
+				cards[cardCount++] = card;
+			}
+			if (positionCount == positions.length) {
+				positions = Arrays.copyOf(positions, positionCount * 2);
+			}
+			positions[positionCount++] = position;
+			offsets[cardCount] = positionCount;
+		}
+
+		Postings build() {
+			return new Postings(
+					Arrays.copyOf(cards, cardCount),
+					Arrays.copyOf(offsets, cardCount + 1),
+					Arrays.copyOf(positions, positionCount));
+		}
+	}
+
+	private TextIndex(ImmutableList<Card> cards) {
+		this.cards = cards;
+		this.lengths = new int[cards.size()];
+		Map<String, PostingsBuilder> builders = new HashMap<>();
+		long total = 0;
+		for (int i = 0; i < cards.size(); i++) {
+			String text = cards.get(i).text();
+			int[] spans = ReminderText.spans(text);
+			int span = 0;
+			int word = 0;
+			Tokenizer tokenizer = new Tokenizer(text);
+			while (tokenizer.next()) {
+				while (span < spans.length && spans[span + 1] <= tokenizer.start) {
+					span += 2;
+				}
+				boolean reminder = span < spans.length
+						&& spans[span] <= tokenizer.start;
+				String term = tokenizer.term();
+				PostingsBuilder builder = builders.get(term);
+				if (builder == null) {
+					builder = new PostingsBuilder();
+					builders.put(term, builder);
+				}
+				builder.add(i, word << 1 | (reminder ? 1 : 0));
+				word++;
+			}
+			lengths[i] = word;
+			total += word;
+		}
+		ImmutableMap.Builder<String, Postings> terms = ImmutableMap.builder();
+		for (Map.Entry<String, PostingsBuilder> entry : builders.entrySet()) {
+			terms.put(entry.getKey(), entry.getValue().build());
+		}
+		this.terms = terms.build();
+		this.averageLength = cards.isEmpty() ? 0 : (double) total / cards.size();
+	}
+
+	/**
+	 * Returns an index of the text of all cards in the given database.
+	 */
+	public static TextIndex of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns an index of the text of the given cards, which keep their
+	 * iteration order as ordinals.
+	 */
+	public static TextIndex of(Collection<? extends Card> cards) {
+		return new TextIndex(ImmutableList.<Card> copyOf(cards));
+	}
+
+	/**
+	 * All indexed cards, in ordinal order.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Returns the cards whose text contains every word of the query, in any
+	 * order, best matches first.
+	 */
+	public ImmutableList<Card> search(String query) {
+		return search(query, false, true);
+	}
+
+	/**
+	 * Returns the cards whose text, outside of reminder text, contains every
+	 * word of the query, in any order, best matches first.
+	 */
+	public ImmutableList<Card> searchNotReminder(String query) {
+		return search(query, false, false);
+	}
+
+	/**
+	 * Returns the cards whose text contains the words of the phrase
+	 * consecutively, best matches first.
+	 */
+	public ImmutableList<Card> phrase(String phrase) {
+		return search(phrase, true, true);
+	}
+
+	/**
+	 * Returns the cards whose text contains the words of the phrase
+	 * consecutively and outside of reminder text, best matches first.
+	 */
+	public ImmutableList<Card> phraseNotReminder(String phrase) {
+		return search(phrase, true, false);
+	}
+
+	private ImmutableList<Card> search(String query, boolean phrase, boolean reminder) {
+		List<String> words = new ArrayList<>();
+		Tokenizer tokenizer = new Tokenizer(query);
+		while (tokenizer.next()) {
+			words.add(tokenizer.term());
+		}
+		if (!phrase) {
+			Set<String> distinct = new LinkedHashSet<>(words);
+			words = new ArrayList<>(distinct);
+		}
+		if (words.isEmpty()) {
+			return ImmutableList.of();
+		}
+		Postings[] postings = new Postings[words.size()];
+		Postings rarest = null;
+		double[] idf = new double[postings.length];
+		double phraseIdf = 0;
+		for (int t = 0; t < postings.length; t++) {
+			postings[t] = terms.get(words.get(t));
+			if (postings[t] == null) {
+				return ImmutableList.of();
+			}
+			if (rarest == null || postings[t].cards.length < rarest.cards.length) {
+				rarest = postings[t];
+			}
+			double df = postings[t].cards.length;
+			idf[t] = Math.log(1 + (cards.size() - df + 0.5) / (df + 0.5));
+			phraseIdf += idf[t];
+		}
+
+		final Map<Card, Double> scores = new HashMap<>();
+		List<Card> matches = new ArrayList<>();
+		int[] indices = new int[postings.length];
+		candidates: for (int card : rarest.cards) {
+			for (int t = 0; t < postings.length; t++) {
+				indices[t] = postings[t].indexOf(card);
+				if (indices[t] < 0) {
+					continue candidates;
+				}
+			}
+			double norm = K1 * (1 - B + B * lengths[card] / averageLength);
+			double score;
+			if (phrase) {
+				// the phrase is scored as a single term, weighted by the idf
+				// of all of its words
+				int frequency = phraseFrequency(postings, indices, reminder);
+				score = frequency > 0 ? weight(phraseIdf, frequency, norm) : 0;
+			} else {
+				score = wordScore(postings, indices, idf, norm, reminder);
+			}
+			if (score > 0) {
+				Card match = cards.get(card);
+				matches.add(match);
+				scores.put(match, score);
+			}
+		}
+		Collections.sort(matches, new Comparator<Card>() {
+			@Override public int compare(Card o1, Card o2) {
+				return Double.compare(scores.get(o2), scores.get(o1));
+			}
+		});
+		return ImmutableList.copyOf(matches);
+	}
+
+	/**
+	 * Returns the BM25 weight of a term with the given idf that occurs the
+	 * given number of times in a text with the given length norm.
+	 */
+	private static double weight(double idf, int frequency, double norm) {
+		return idf * frequency * (K1 + 1) / (frequency + norm);
+	}
+
+	/**
+	 * Returns the sum of the weights of the words, each by its own number of
+	 * qualifying occurrences, or zero if any word has none.
+	 */
+	private static double wordScore(Postings[] postings, int[] indices,
+			double[] idf, double norm, boolean reminder) {
+		double result = 0;
+		for (int t = 0; t < postings.length; t++) {
+			Postings p = postings[t];
+			int count = 0;
+			for (int i = p.offsets[indices[t]]; i < p.offsets[indices[t] + 1]; i++) {
+				if (reminder || (p.positions[i] & 1) == 0) {
+					count++;
+				}
+			}
+			if (count == 0) {
+				return 0;
+			}
+			result += weight(idf[t], count, norm);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of qualifying occurrences of the whole phrase.
+	 */
+	private static int phraseFrequency(Postings[] postings, int[] indices,
+			boolean reminder) {
+		Postings first = postings[0];
+		int count = 0;
+		occurrences: for (int i = first.offsets[indices[0]]; i < first.offsets[indices[0] + 1]; i++) {
+			int position = first.positions[i];
+			if (!reminder && (position & 1) != 0) {
+				continue;
+			}
+			int word = position >> 1;
+			for (int t = 1; t < postings.length; t++) {
+				if (!postings[t].has(indices[t], word + t, reminder)) {
+					continue occurrences;
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Splits text into words, as described in the class documentation.
+	 */
+	private static final class Tokenizer {
+
+		private final String text;
+		int start;
+		int end;
+
+		Tokenizer(String text) {
+			this.text = text;
+		}
+
+		boolean next() {
+			int i = end;
+			while (i < text.length() && !isWordStart(text.charAt(i))) {
+				i++;
+			}
+			if (i == text.length()) {
+				return false;
+			}
+			start = i;
+			if (text.charAt(i) == '{') {
+				int close = text.indexOf('}', i);
+				end = close == -1 ? text.length() : close + 1;
+			} else {
+				while (i < text.length() && isWordPart(text.charAt(i))) {
+					i++;
+				}
+				end = i;
+			}
+			return true;
+		}
+
+		String term() {
+			return Folding.fold(text.subSequence(start, end));
+		}
+
+		private static boolean isWordStart(char c) {
+			return c == '{' || Character.isLetterOrDigit(c);
+		}
+
+		private static boolean isWordPart(char c) {
+			return c == '\'' || Character.isLetterOrDigit(c);
+		}
+	}
+
+}
@@ -0,0 +1,476 @@
+package magic.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import magic.Card;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An index of the trigrams (runs of three characters) in the names and text
+ * of a collection of cards, for case-insensitive substring and regular
+ * expression searches.
+ * <p>
+ * Characters are folded as by {@link CaseInsensitive}. For each trigram, the
+ * index keeps the sorted ordinals (positions in {@link #cards()}) of the cards
+ * whose name or text contains it. A query of at least three characters can
+ * only occur in a card that has all of the query's trigrams, so intersecting
+ * their ordinals leaves a small set of candidates, and only those are
+ * searched. Queries shorter than three characters search every card.
+ * <p>
+ * Regular expressions are narrowed in the same way by the runs of literal
+ * characters outside groups and character classes, which every match must
+ * contain; expressions from which none can be found, such as those with an
+ * alternation at the top level, search every card.
+ */
+public final class TrigramIndex {
+
+	private static final int GRAM = 3;
+
+	// escapes that are followed by more than the escaped character
+	private static final String ESCAPES_WITH_ARGUMENTS = "QxucpPNkg";
+
+	private final ImmutableList<Card> cards;
+	private final Postings names;
+	private final Postings texts;
+
+	private TrigramIndex(ImmutableList<Card> cards) {
+		this.cards = cards;
+		this.names = new Postings();
+		this.texts = new Postings();
+		for (int i = 0; i < cards.size(); i++) {
+			Card card = cards.get(i);
+			names.add(i, card.name());
+			texts.add(i, card.text());
+		}
+		names.trim();
+		texts.trim();
+	}
+
+	/**
+	 * Returns an index of all cards in the given database.
+	 */
+	public static TrigramIndex of(Database database) {
+		return of(database.cards());
+	}
+
+	/**
+	 * Returns an index of the given cards, which keep their iteration order as
+	 * ordinals.
+	 */
+	public static TrigramIndex of(Collection<? extends Card> cards) {
+		return new TrigramIndex(ImmutableList.<Card> copyOf(cards));
+	}
+
+	/**
+	 * Returns the cards, in ordinal order.
+	 */
+	public ImmutableList<Card> cards() {
+		return cards;
+	}
+
+	/**
+	 * Returns the cards whose name contains the query, ignoring case, in
+	 * ordinal order.
+	 */
+	public ImmutableList<Card> nameContains(String query) {
+		return contains(query, true, false);
+	}
+
+	/**
+	 * Returns the cards whose text contains the query, ignoring case, in
+	 * ordinal order.
+	 */
+	public ImmutableList<Card> textContains(String query) {
+		return contains(query, false, true);
+	}
+
+	/**
+	 * Returns the cards whose name or text contains the query, ignoring case,
+	 * in ordinal order.
+	 */
+	public ImmutableList<Card> contains(String query) {
+		return contains(query, true, true);
+	}
+
+	/**
+	 * Returns the cards with a name in which the pattern can be found, in
+	 * ordinal order.
+	 */
+	public ImmutableList<Card> nameMatches(Pattern pattern) {
+		return matches(pattern, true, false);
+	}
+
+	/**
+	 * Returns the cards with text in which the pattern can be found, in
+	 * ordinal order.
+	 */
+	public ImmutableList<Card> textMatches(Pattern pattern) {
+		return matches(pattern, false, true);
+	}
+
+	private ImmutableList<Card> contains(String query, boolean name, boolean text) {
+		CaseInsensitive.Finder finder = new CaseInsensitive.Finder(query);
+		List<String> literals = Collections.singletonList(query);
+		ImmutableList.Builder<Card> result = ImmutableList.builder();
+		BitSet candidates = candidates(literals, name, text);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			Card card = cards.get(i);
+			if (name && finder.indexOf(card.name(), 0) != -1
+					|| text && finder.indexOf(card.text(), 0) != -1) {
+				result.add(card);
+			}
+		}
+		return result.build();
+	}
+
+	private ImmutableList<Card> matches(Pattern pattern, boolean name, boolean text) {
+		ImmutableList.Builder<Card> result = ImmutableList.builder();
+		BitSet candidates = candidates(literals(pattern), name, text);
+		Matcher matcher = pattern.matcher("");
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			Card card = cards.get(i);
+			if (name && matcher.reset(card.name()).find()
+					|| text && matcher.reset(card.text()).find()) {
+				result.add(card);
+			}
+		}
+		return result.build();
+	}
+
+	/*
+	 * Returns the ordinals of the cards whose name or text, as selected, has
+	 * every trigram of the literals.
+	 */
+	private BitSet candidates(List<String> literals, boolean name, boolean text) {
+		BitSet result = new BitSet(cards.size());
+		if (name) {
+			result.or(names.candidates(literals, cards.size()));
+		}
+		if (text) {
+			result.or(texts.candidates(literals, cards.size()));
+		}
+		return result;
+	}
+
+	/*
+	 * Returns runs of characters that every match of the pattern contains.
+	 * This only understands a simple subset of the syntax, and returns no runs
+	 * for anything it does not understand.
+	 */
+	static List<String> literals(Pattern pattern) {
+		String regex = pattern.pattern();
+		int flags = pattern.flags();
+		if ((flags & Pattern.LITERAL) != 0) {
+			return Collections.singletonList(regex);
+		}
+		if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0
+				|| hasInlineComments(regex)) {
+			return Collections.emptyList();
+		}
+		List<String> result = new ArrayList<>();
+		StringBuilder run = new StringBuilder();
+		int i = 0;
+		while (i < regex.length()) {
+			// a quantifier applies to a whole code point, not to its low
+			// surrogate
+			int c = regex.codePointAt(i);
+			int literal = -1;
+			int next = i + Character.charCount(c);
+			if (c == '\\') {
+				if (next >= regex.length()) {
+					return Collections.emptyList();
+				}
+				int escaped = regex.codePointAt(next);
+				next += Character.charCount(escaped);
+				if (!Character.isLetterOrDigit(escaped)) {
+					literal = escaped;
+				} else if (ESCAPES_WITH_ARGUMENTS.indexOf(escaped) != -1
+						|| Character.isDigit(escaped)) {
+					return Collections.emptyList();
+				}
+			} else if (c == '[') {
+				next = skipClass(regex, i);
+			} else if (c == '(') {
+				next = skipGroup(regex, i);
+			} else if (c == '{') {
+				next = regex.indexOf('}', i) + 1;
+				if (next == 0) {
+					return Collections.emptyList();
+				}
+			} else if (c == '|') {
+				// an alternative at the top level need not contain any run
+				return Collections.emptyList();
+			} else if (".^$)".indexOf(c) == -1 && "?*+{".indexOf(c) == -1) {
+				literal = c;
+			}
+			if (next == -1) {
+				return Collections.emptyList();
+			}
+			// a quantifier applies to the last character or element
+			char quantifier = next < regex.length() ? regex.charAt(next) : 0;
+			boolean optional = quantifier == '?' || quantifier == '*'
+					|| quantifier == '{';
+			if (literal != -1 && !optional) {
+				run.appendCodePoint(literal);
+			}
+			if (literal == -1 || optional || quantifier == '+') {
+				flush(run, result);
+			}
+			i = next;
+		}
+		flush(run, result);
+		return result;
+	}
+
+	/*
+	 * Returns whether the pattern turns on comments mode with an inline flag,
+	 * in which whitespace is not literal.
+	 */
+	private static boolean hasInlineComments(String regex) {
+		for (int i = regex.indexOf("(?"); i != -1; i = regex.indexOf("(?", i + 1)) {
+			for (int j = i + 2; j < regex.length(); j++) {
+				char c = regex.charAt(j);
+				if (c == 'x') {
+					return true;
+				}
+				if (c == '-' || c == ':' || c == ')' || !Character.isLetter(c)) {
+					break;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void flush(StringBuilder run, List<String> runs) {
+		if (run.length() >= GRAM) {
+			runs.add(run.toString());
+		}
+		run.setLength(0);
+	}
+
+	/*
+	 * Returns the index after the character class starting at the given
+	 * index, or -1 if it is not closed. As in Pattern, a ']' right after the
+	 * '[' or "[^" that opens a class, nested or not, is literal.
+	 */
+	private static int skipClass(String regex, int start) {
+		int depth = 0;
+		int literal = -1;
+		for (int i = start; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				depth++;
+				literal = regex.startsWith("^", i + 1) ? i + 2 : i + 1;
+			} else if (c == ']' && i != literal && --depth == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Returns the index after the group starting at the given index, or -1
+	 * if it is not closed.
+	 */
+	private static int skipGroup(String regex, int start) {
+		int depth = 0;
+		for (int i = start; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				i = skipClass(regex, i);
+				if (i == -1) {
+					return -1;
+				}
+				i--;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Packs three folded characters into the low 48 bits of a long.
+	 */
+	private static long gram(long previous, char c) {
+		return (previous << 16 | CaseInsensitive.fold(c)) & 0xFFFFFFFFFFFFL;
+	}
+
+	/*
+	 * An open-addressing table from trigrams to the sorted ordinals of the
+	 * strings that contain them.
+	 */
+	private static final class Postings {
+
+		private static final long EMPTY = -1;
+
+		private long[] grams = new long[1024];
+		private int[][] ordinals = new int[1024][];
+		private int[] counts = new int[1024];
+		private int size;
+
+		Postings() {
+			Arrays.fill(grams, EMPTY);
+		}
+
+		void add(int ordinal, String s) {
+			long gram = 0;
+			for (int i = 0; i < s.length(); i++) {
+				gram = gram(gram, s.charAt(i));
+				if (i >= GRAM - 1) {
+					add(gram, ordinal);
+				}
+			}
+		}
+
+		private void add(long gram, int ordinal) {
+			int slot = slot(gram);
+			if (grams[slot] == EMPTY) {
+				if ((size + 1) * 2 > grams.length) {
+					grow();
+					slot = slot(gram);
+				}
+				grams[slot] = gram;
+				ordinals[slot] = new int[2];
+				size++;
+			}
+			int count = counts[slot];
+			int[] list = ordinals[slot];
+			// ordinals are added in order, so a repeat is always the last
+			if (count > 0 && list[count - 1] == ordinal) {
+				return;
+			}
+			if (count == list.length) {
+				list = ordinals[slot] = Arrays.copyOf(list, count * 2);
+			}
+			list[count] = ordinal;
+			counts[slot] = count + 1;
+		}
+
+		void trim() {
+			for (int slot = 0; slot < grams.length; slot++) {
+				if (grams[slot] != EMPTY) {
+					ordinals[slot] = Arrays.copyOf(ordinals[slot], counts[slot]);
+				}
+			}
+			counts = null;
+		}
+
+		private int slot(long gram) {
+			int mask = grams.length - 1;
+			long hash = gram * 0x9E3779B97F4A7C15L;
+			int slot = (int) (hash >>> 32) & mask;
+			while (grams[slot] != EMPTY && grams[slot] != gram) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow() {
+			long[] oldGrams = grams;
+			int[][] oldOrdinals = ordinals;
+			int[] oldCounts = counts;
+			grams = new long[oldGrams.length * 2];
+			ordinals = new int[grams.length][];
+			counts = new int[grams.length];
+			Arrays.fill(grams, EMPTY);
+			for (int i = 0; i < oldGrams.length; i++) {
+				if (oldGrams[i] != EMPTY) {
+					int slot = slot(oldGrams[i]);
+					grams[slot] = oldGrams[i];
+					ordinals[slot] = oldOrdinals[i];
+					counts[slot] = oldCounts[i];
+				}
+			}
+		}
+
+		private int[] get(long gram) {
+			int slot = slot(gram);
+			return grams[slot] == EMPTY ? null : ordinals[slot];
+		}
+
+		/*
+		 * Returns the ordinals that have every trigram of the literals; with
+		 * no trigrams, that is every ordinal.
+		 */
+		BitSet candidates(List<String> literals, int size) {
+			List<int[]> lists = new ArrayList<>();
+			for (String literal : literals) {
+				long gram = 0;
+				for (int i = 0; i < literal.length(); i++) {
+					gram = gram(gram, literal.charAt(i));
+					if (i >= GRAM - 1) {
+						int[] list = get(gram);
+						if (list == null) {
+							return new BitSet();
+						}
+						lists.add(list);
+					}
+				}
+			}
+			BitSet result = new BitSet(size);
+			if (lists.isEmpty()) {
+				result.set(0, size);
+				return result;
+			}
+			Collections.sort(lists, new Comparator<int[]>() {
+				@Override public int compare(int[] a, int[] b) {
+					return Integer.compare(a.length, b.length);
+				}
+			});
+			int[] current = lists.get(0).clone();
+			int count = current.length;
+			for (int k = 1; k < lists.size() && count > 0; k++) {
+				count = intersect(current, count, lists.get(k), current);
+			}
+			for (int i = 0; i < count; i++) {
+				result.set(current[i]);
+			}
+			return result;
+		}
+
+		/*
+		 * Intersects the first count elements of a with b, writing the result
+		 * to the start of out, which may be a, and returns its size. Elements
+		 * are found in b by galloping, as b is usually much longer.
+		 */
+		private static int intersect(int[] a, int count, int[] b, int[] out) {
+			int result = 0;
+			int low = 0;
+			for (int i = 0; i < count && low < b.length; i++) {
+				int value = a[i];
+				int step = 1;
+				int high = low;
+				while (high < b.length && b[high] < value) {
+					low = high + 1;
+					high += step;
+					step <<= 1;
+				}
+				int index = Arrays.binarySearch(b, low, Math.min(high + 1, b.length), value);
+				if (index >= 0) {
+					out[result++] = value;
+					low = index + 1;
+				} else {
+					low = -index - 1;
+				}
+			}
+			return result;
+		}
+	}
+
+}